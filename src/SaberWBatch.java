@@ -0,0 +1,128 @@
+import com.saberw.core.BatchCompressor;
+import com.saberw.core.ResultCache;
+import com.saberw.core.SharedDictionary;
+import com.saberw.util.BpeCostModel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакетное сжатие из командной строки:
+ *
+ *   java SaberWBatch <каталог|glob> [-o каталог] [-t потоков] [-m словарь.tiktoken]
+ *                    [-d словарь [--train]]
+ *
+ *   -o  куда писать .saberw (по умолчанию - рядом с исходными файлами)
+ *   -t  число потоков (по умолчанию - число ядер)
+ *   -m  экономить токены языковой модели: словарь BPE в формате tiktoken
+ *       (например, cl100k_base.tiktoken); без -m экономятся символы
+ *   -d  общий словарь для всех файлов; с --train он обучается на этих файлах и сохраняется
+ */
+public class SaberWBatch {
+    public static void main(String[] args) {
+        String input = null;
+        Path outputDirectory = null;
+        Path dictionaryFile = null;
+        Path vocabularyFile = null;
+        boolean train = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-o": outputDirectory = Paths.get(args[++i]); break;
+                    case "-t": threads = Integer.parseInt(args[++i]); break;
+                    case "-d": dictionaryFile = Paths.get(args[++i]); break;
+                    case "-m": vocabularyFile = Paths.get(args[++i]); break;
+                    case "--train": train = true; break;
+                    default:
+                        if (input != null) {
+                            throw new IllegalArgumentException("Лишний аргумент: " + args[i]);
+                        }
+                        input = args[i];
+                }
+            }
+            if (input == null) {
+                throw new IllegalArgumentException("Не задан каталог или шаблон файлов");
+            }
+            if (train && dictionaryFile == null) {
+                throw new IllegalArgumentException("Для --train нужен файл словаря (-d)");
+            }
+            if (vocabularyFile != null && dictionaryFile != null) {
+                throw new IllegalArgumentException("Модель BPE (-m) не применяется к общему словарю (-d)");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка: " + e.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+
+        try {
+            List<Path> files = BatchCompressor.findFiles(input);
+            if (files.isEmpty()) {
+                System.err.println("Файлы не найдены: " + input);
+                System.exit(1);
+                return;
+            }
+            System.out.printf("Найдено файлов: %,d, потоков: %d%n", files.size(), threads);
+
+            BatchCompressor compressor = new BatchCompressor(threads);
+            // Одинаковые файлы (шаблоны, копии) сжимаются один раз
+            compressor.setResultCache(new ResultCache());
+            if (vocabularyFile != null) {
+                BpeCostModel costModel = BpeCostModel.load(vocabularyFile);
+                compressor.setCostModel(costModel);
+                System.out.printf("Модель стоимости: %s, %,d токенов%n",
+                    costModel.getName(), costModel.getVocabularySize());
+            }
+            if (dictionaryFile != null) {
+                compressor.setSharedDictionary(loadOrTrain(dictionaryFile, files, train));
+                System.out.printf("Общий словарь %s: %,d записей%n",
+                    compressor.getSharedDictionary().getId(),
+                    compressor.getSharedDictionary().size());
+            }
+
+            Path inputRoot = Files.isDirectory(Paths.get(input)) ? Paths.get(input) : null;
+            BatchCompressor.BatchResult result = compressor.compress(files, inputRoot, outputDirectory);
+
+            for (BatchCompressor.FileResult file : result.getFiles()) {
+                if (file.isFailed()) {
+                    System.err.println("Ошибка: " + file.getInput() + " - " + file.getError());
+                }
+            }
+            System.out.println(result);
+            if (compressor.getSharedDictionary() == null) {
+                System.out.println(compressor.getResultCache());
+            }
+            System.exit(result.getFailedCount() == 0 ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println("Ошибка: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static SharedDictionary loadOrTrain(Path dictionaryFile, List<Path> files,
+                                                boolean train) throws IOException {
+        if (!train) {
+            return SharedDictionary.load(dictionaryFile);
+        }
+        List<String> samples = new ArrayList<>(files.size());
+        for (Path file : files) {
+            samples.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+        SharedDictionary dictionary = SharedDictionary.train(samples);
+        dictionary.save(dictionaryFile);
+        return dictionary;
+    }
+
+    private static void printUsage() {
+        System.err.println("Использование: java SaberWBatch <каталог|glob> " +
+                           "[-o каталог] [-t потоков] [-m словарь.tiktoken] [-d словарь [--train]]");
+    }
+}
@@ -0,0 +1,46 @@
+import com.saberw.core.CompressionServer;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Локальный сервис сжатия:
+ *
+ *   java SaberWServer [-p порт] [-d словарь]...
+ *
+ *   -p  порт на 127.0.0.1 (по умолчанию 8765)
+ *   -d  общий словарь, загружаемый при старте (можно несколько)
+ */
+public class SaberWServer {
+    public static void main(String[] args) throws IOException {
+        // TCP_NODELAY для встроенного HTTP-сервера: без него каждый ответ ждёт ~40 мс.
+        // Свойство читается один раз, поэтому задаём его до первого HttpServer;
+        // явное -Dsun.net.httpserver.nodelay=... не трогаем
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        int port = 8765;
+        List<String> dictionaryFiles = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if ("-p".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("-d".equals(args[i]) && i + 1 < args.length) {
+                dictionaryFiles.add(args[++i]);
+            } else {
+                System.err.println("Использование: java SaberWServer [-p порт] [-d словарь]...");
+                System.exit(2);
+            }
+        }
+
+        CompressionServer server = new CompressionServer(port);
+        for (String file : dictionaryFiles) {
+            System.out.println("Загружен словарь: " + server.loadDictionary(Paths.get(file)));
+        }
+        server.start();
+        System.out.println("SaberW слушает http://127.0.0.1:" + server.getPort());
+    }
+}
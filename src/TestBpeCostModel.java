@@ -0,0 +1,164 @@
+import com.saberw.core.SaberWCore;
+import com.saberw.model.CompressionResult;
+import com.saberw.util.BpeCostModel;
+import com.saberw.util.CodeSpace;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Проверка BpeCostModel на маленьком словаре в формате tiktoken (bpe_test.tiktoken,
+ * 1024 токена, обучен на README и текстах проекта). Ожидаемые числа токенов
+ * посчитаны независимой реализацией склейки по рангам (как в tiktoken).
+ *
+ *   java TestBpeCostModel [путь к bpe_test.tiktoken]
+ */
+public class TestBpeCostModel {
+
+    private static final String FIXTURE = "bpe_test.tiktoken";
+
+    // Текст и его стоимость в токенах тестового словаря
+    private static final Object[][] KNOWN_COSTS = {
+        {"", 0},
+        {"a", 1},
+        {" the", 1},
+        {"the", 2},
+        {"сжатие", 3},
+        {" сжатие", 1},
+        {"словарь", 4},
+        {" словарь", 2},
+        {"Сжатие текста позволяет экономить место.", 19},
+        {"Paste any text, then compress it.", 16},
+        {"привет, мир!", 8},
+        {"neural network", 9},
+        {"12345", 5},
+        {"2026-01-04 12:00:01", 19},
+        {"   \n\n", 2},
+        {"㐀", 1},
+        {"SaberW", 1}
+    };
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Модель стоимости BPE (тестовый словарь) ===\n");
+
+        BpeCostModel model = BpeCostModel.load(findFixture(args));
+
+        testVocabulary(model);
+        testKnownCosts(model);
+        testCache(model);
+        testMalformedVocabulary();
+        testRoundTrip(model);
+
+        System.out.println("\nОшибок: " + failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Path findFixture(String[] args) throws IOException {
+        if (args.length > 0) {
+            return Paths.get(args[0]);
+        }
+        // Из корня проекта или из каталога src
+        for (Path candidate : new Path[] {Paths.get("src", FIXTURE), Paths.get(FIXTURE)}) {
+            if (Files.exists(candidate)) {
+                return candidate;
+            }
+        }
+        throw new IOException("Не найден тестовый словарь " + FIXTURE);
+    }
+
+    private static void testVocabulary(BpeCostModel model) throws IOException {
+        System.out.println("Тест 1: Загрузка словаря");
+        System.out.println("  " + model);
+        check(model.getVocabularySize() == 1024, "размер словаря: " + model.getVocabularySize());
+        check(model.getName().equals("bpe_test"), "имя модели: " + model.getName());
+
+        // Отпечаток зависит только от содержимого словаря
+        BpeCostModel again = BpeCostModel.load(findFixture(new String[0]));
+        check(again.getFingerprint().equals(model.getFingerprint()), "отпечаток повторной загрузки");
+    }
+
+    private static void testKnownCosts(BpeCostModel model) {
+        System.out.println("Тест 2: Число токенов");
+        for (Object[] known : KNOWN_COSTS) {
+            String text = (String) known[0];
+            int expected = (Integer) known[1];
+            int actual = model.cost(text);
+            System.out.printf("  %-45s %d%n", "\"" + text.replace("\n", "\\n") + "\"", actual);
+            check(actual == expected, "\"" + text + "\": " + actual + " вместо " + expected);
+        }
+        // Слово в тексте считается с пробелом перед ним
+        check(model.occurrenceCost("сжатие") == 1, "стоимость вхождения \"сжатие\"");
+    }
+
+    private static void testCache(BpeCostModel model) {
+        System.out.println("Тест 3: Кэш кусков");
+        String text = "Сжатие текста позволяет экономить место. Сжатие текста очень важно.";
+        int first = model.cost(text);
+        long hits = model.getCacheHits();
+        int second = model.cost(text);
+        check(first == second, "стоимость из кэша");
+        check(model.getCacheHits() > hits, "попадания в кэш");
+        System.out.println("  " + model);
+    }
+
+    private static void testMalformedVocabulary() throws IOException {
+        System.out.println("Тест 4: Повреждённый словарь");
+        Path file = Files.createTempFile("saberw", ".tiktoken");
+        try {
+            Files.write(file, "YQ== 0\nnot-base64!\n".getBytes(StandardCharsets.UTF_8));
+            BpeCostModel.load(file);
+            check(false, "повреждённый словарь загрузился");
+        } catch (IOException e) {
+            System.out.println("  " + e.getMessage());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void testRoundTrip(BpeCostModel model) {
+        System.out.println("Тест 5: Сжатие с моделью BPE");
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            builder.append("Сжатие текста позволяет экономить место в контекстном окне. ")
+                   .append("The compressor replaces frequent words with short codes. ")
+                   .append("Программа SaberW сжимает текст, запрос ").append(i).append(".\n");
+        }
+        String text = builder.toString();
+
+        roundTrip("пространство по умолчанию", text, model, null);
+        roundTrip("пространство по токенам", text, model, CodeSpace.DEFAULT.rankedBy(model));
+    }
+
+    private static void roundTrip(String name, String text, BpeCostModel model, CodeSpace codeSpace) {
+        SaberWCore core = new SaberWCore(text, false, false);
+        core.setCostModel(model);
+        if (codeSpace != null) {
+            core.setCodeSpace(codeSpace);
+        }
+        CompressionResult result = core.compress();
+        CompressionResult.Statistics stats = result.getStats();
+        String decompressed = core.decompress(result.getCompressedText(), result.getDictionary());
+
+        System.out.printf("  %s: записей %d, токенов %,d -> %,d%n", name,
+                          result.getDictionary().size(), stats.getOriginalTokens(),
+                          stats.getCompressedTokens());
+        check(text.equals(decompressed), name + ": декомпрессия");
+        check(model.getName().equals(stats.getCostModel()), name + ": модель в статистике");
+        check(!result.getDictionary().isEmpty(), name + ": словарь пуст");
+        check(stats.getCompressedTokens() < stats.getOriginalTokens(), name + ": токенов не меньше");
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            failures++;
+            System.out.println("  ОШИБКА: " + description);
+        }
+    }
+}
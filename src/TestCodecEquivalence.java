@@ -0,0 +1,256 @@
+import com.saberw.core.BinaryDictionary;
+import com.saberw.core.CompiledCodec;
+import com.saberw.core.DictionaryMatcher;
+import com.saberw.core.Tokenizer;
+import com.saberw.model.DictionaryEntry;
+import com.saberw.util.ImprovedCodeGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Проверка совпадения быстрых путей кодирования с эталонными
+ * на случайных текстах и словарях (фиксированный seed - результат повторяем):
+ *   1. BinaryDictionary (запись, отображение, кодирование, декодирование) - CompiledCodec
+ *   2. DictionaryMatcher - прежний цикл indexOf/replace
+ *   3. CompiledCodec.encodeParallel - encode
+ */
+public class TestCodecEquivalence {
+
+    private static final int ROUNDS = 300;
+
+    // Алфавит слов: латиница, кириллица, цифры; '=' встречается внутри фраз
+    private static final String LETTERS = "abcdeклмно0123";
+    private static final String[] SEPARATORS = {" ", " ", " ", ", ", ". ", "\n", "=", " - "};
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== Совпадение быстрых путей кодирования с эталонными ===\n");
+
+        testBinaryDictionary();
+        testDictionaryMatcher();
+        testParallelEncoding();
+
+        System.out.println("\nОшибок: " + failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void testBinaryDictionary() throws IOException {
+        System.out.println("Тест 1: BinaryDictionary и CompiledCodec");
+        Random random = new Random(14);
+        int checked = 0;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            String text = randomText(random, 2000);
+            List<DictionaryEntry> dictionary = randomDictionary(random, text, true);
+
+            CompiledCodec codec = new CompiledCodec(dictionary);
+            BinaryDictionary binary = BinaryDictionary.wrap(BinaryDictionary.toBuffer(dictionary));
+            String expected = codec.encode(text);
+            String encoded = binary.encode(text);
+
+            check(encoded.equals(expected), "кодирование, раунд " + round);
+            check(binary.decode(encoded).equals(codec.decode(encoded)), "декодирование, раунд " + round);
+            check(binary.decode(encoded).equals(text), "обратимость, раунд " + round);
+            check(sameEntries(binary.toEntries(), dictionary), "записи, раунд " + round);
+            checked++;
+        }
+
+        // Через файл и FileChannel.map
+        Random fileRandom = new Random(140);
+        String text = randomText(fileRandom, 20000);
+        List<DictionaryEntry> dictionary = randomDictionary(fileRandom, text, true);
+        Path file = Files.createTempFile("saberw", ".swdb");
+        try {
+            BinaryDictionary.write(dictionary, file);
+            check(BinaryDictionary.isBinaryDictionary(file), "сигнатура файла");
+            BinaryDictionary mapped = BinaryDictionary.map(file);
+            CompiledCodec codec = new CompiledCodec(dictionary);
+            String encoded = mapped.encode(text);
+            check(encoded.equals(codec.encode(text)), "кодирование из файла");
+            check(mapped.decode(encoded).equals(text), "декодирование из файла");
+            check(sameEntries(mapped.toEntries(), dictionary), "записи из файла");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        System.out.println("  Словарей проверено: " + (checked + 1));
+    }
+
+    private static void testDictionaryMatcher() {
+        System.out.println("Тест 2: DictionaryMatcher и прежний цикл indexOf/replace");
+        Random random = new Random(1);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            String text = randomText(random, 2000);
+            List<DictionaryEntry> dictionary = randomDictionary(random, text, false);
+
+            check(new DictionaryMatcher(dictionary, true).encode(text)
+                      .equals(encodeOld(text, dictionary, true)),
+                  "целые слова, раунд " + round);
+            check(new DictionaryMatcher(dictionary, false).encode(text)
+                      .equals(encodeOld(text, dictionary, false)),
+                  "подстроки, раунд " + round);
+        }
+
+        System.out.println("  Словарей проверено: " + ROUNDS);
+    }
+
+    private static void testParallelEncoding() {
+        System.out.println("Тест 3: encodeParallel и encode");
+        Random random = new Random(17);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            for (int round = 0; round < ROUNDS / 3; round++) {
+                String text = randomText(random, 20000);
+                List<DictionaryEntry> dictionary = randomDictionary(random, text, true);
+                // Маленькие куски - много швов, в том числе внутри фраз
+                int chunkSize = 16 + random.nextInt(500);
+
+                CompiledCodec tokens = new CompiledCodec(dictionary);
+                check(tokens.encodeParallel(text, pool, chunkSize).equals(tokens.encode(text)),
+                      "по токенам, раунд " + round);
+
+                CompiledCodec substrings = new CompiledCodec(dictionary, false);
+                check(substrings.encodeParallel(text, pool, chunkSize).equals(substrings.encode(text)),
+                      "подстроки, раунд " + round);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        System.out.println("  Словарей проверено: " + ROUNDS / 3);
+    }
+
+    // === Эталон: прежнее кодирование SaberWCore.encodeText и SaberWCompressor.encodeTextSimple ===
+
+    private static String encodeOld(String text, List<DictionaryEntry> dictionary, boolean wholeWordsOnly) {
+        // Сортируем слова по длине (от длинных к коротким)
+        List<DictionaryEntry> sortedDict = new ArrayList<>(dictionary);
+        sortedDict.sort((a, b) -> Integer.compare(b.getWord().length(), a.getWord().length()));
+
+        StringBuilder result = new StringBuilder(text);
+
+        for (DictionaryEntry entry : sortedDict) {
+            String word = entry.getWord();
+            String code = entry.getCode();
+
+            int index = 0;
+            while ((index = result.indexOf(word, index)) != -1) {
+                if (!wholeWordsOnly || isWholeWord(result, index, word.length())) {
+                    result.replace(index, index + word.length(), code);
+                    index += code.length();
+                } else {
+                    index += 1;
+                }
+            }
+        }
+
+        return result.toString();
+    }
+
+    private static boolean isWholeWord(StringBuilder text, int start, int length) {
+        if (start > 0 && Character.isLetterOrDigit(text.charAt(start - 1))) {
+            return false;
+        }
+        if (start + length < text.length() &&
+            Character.isLetterOrDigit(text.charAt(start + length))) {
+            return false;
+        }
+        return true;
+    }
+
+    // === Случайные данные ===
+
+    private static String randomText(Random random, int length) {
+        String[] vocabulary = new String[20 + random.nextInt(60)];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = randomWord(random);
+        }
+
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            // Частые слова - в начале словаря
+            int index = (int) Math.abs(random.nextGaussian() * vocabulary.length / 3) % vocabulary.length;
+            text.append(vocabulary[index]);
+            text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String randomWord(Random random) {
+        int length = 1 + random.nextInt(7);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return word.toString();
+    }
+
+    /**
+     * Слова текста и (если phrases) фразы из нескольких токенов - от слова до слова,
+     * в том числе с '=' внутри; коды - от ImprovedCodeGenerator, как при сжатии
+     */
+    private static List<DictionaryEntry> randomDictionary(Random random, String text, boolean phrases) {
+        int[] triples = Tokenizer.scan(text);
+        int tokenCount = triples.length / 3;
+
+        Set<String> words = new LinkedHashSet<>();
+        int wanted = 5 + random.nextInt(60);
+        for (int attempt = 0; attempt < wanted * 4 && words.size() < wanted; attempt++) {
+            int first = random.nextInt(tokenCount);
+            if (triples[first * 3 + 2] != Tokenizer.TYPE_WORD) {
+                continue;
+            }
+            int last = first;
+            if (phrases && random.nextInt(4) == 0) {
+                last = Math.min(tokenCount - 1, first + 2 * (1 + random.nextInt(2)));
+                if (triples[last * 3 + 2] != Tokenizer.TYPE_WORD) {
+                    continue;
+                }
+            }
+            String word = text.substring(triples[first * 3], triples[last * 3 + 1]);
+            if (word.indexOf('\n') < 0) {
+                words.add(word);
+            }
+        }
+
+        ImprovedCodeGenerator generator = new ImprovedCodeGenerator(text);
+        List<DictionaryEntry> dictionary = new ArrayList<>();
+        for (String word : words) {
+            String code = generator.nextCode();
+            if (generator.isCodeSafe(code)) {
+                dictionary.add(new DictionaryEntry(word, code, 1));
+            }
+        }
+        return dictionary;
+    }
+
+    private static boolean sameEntries(List<DictionaryEntry> actual, List<DictionaryEntry> expected) {
+        if (actual.size() != expected.size()) {
+            return false;
+        }
+        for (int i = 0; i < actual.size(); i++) {
+            if (!actual.get(i).getWord().equals(expected.get(i).getWord())
+                    || !actual.get(i).getCode().equals(expected.get(i).getCode())
+                    || actual.get(i).getFrequency() != expected.get(i).getFrequency()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            failures++;
+            System.out.println("  НЕ СОВПАДАЕТ: " + description);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.saberw.core;
+
+import com.saberw.model.CompressionResult;
+import com.saberw.model.DictionaryEntry;
+import com.saberw.util.CostModel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Пакетное сжатие файлов без GUI.
+ * Файлы сжимаются параллельно в ForkJoinPool (кража задач); одновременно
+ * в работе не больше 2 * threads файлов, поэтому память не растёт с числом файлов.
+ *
+ * Выходной файл <имя>.saberw:
+ *   - свой словарь: текст словаря (DictionaryBuilder.formatDictionary), перевод строки, сжатый текст;
+ *   - общий словарь: сообщение SharedDictionary ("SW:<id>:<n>" ...).
+ */
+public class BatchCompressor {
+
+    public static final String OUTPUT_EXTENSION = ".saberw";
+
+    // Конец словаря и перевод строки перед сжатым текстом
+    private static final String DICTIONARY_END = "\n# END #\n";
+
+    private final int threads;
+    private SharedDictionary sharedDictionary;
+    private ResultCache resultCache;
+    private CostModel costModel;
+
+    public BatchCompressor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchCompressor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Число потоков должно быть положительным: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Сжимать все файлы общим словарём (null - у каждого файла свой словарь)
+     */
+    public void setSharedDictionary(SharedDictionary sharedDictionary) {
+        this.sharedDictionary = sharedDictionary;
+    }
+
+    public SharedDictionary getSharedDictionary() {
+        return sharedDictionary;
+    }
+
+    /**
+     * Кэш результатов: одинаковые файлы пакета сжимаются один раз (null - без кэша)
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Модель стоимости для своих словарей файлов (null - символы).
+     * Общий словарь обучается и применяется без неё
+     */
+    public void setCostModel(CostModel costModel) {
+        this.costModel = costModel;
+    }
+
+    public CostModel getCostModel() {
+        return costModel;
+    }
+
+    /**
+     * Итоги одного файла
+     */
+    public static class FileResult {
+        private final Path input;
+        private final Path output;
+        private final long inputBytes;
+        private final long outputBytes;
+        private final String error;
+
+        FileResult(Path input, Path output, long inputBytes, long outputBytes, String error) {
+            this.input = input;
+            this.output = output;
+            this.inputBytes = inputBytes;
+            this.outputBytes = outputBytes;
+            this.error = error;
+        }
+
+        public Path getInput() { return input; }
+        public Path getOutput() { return output; }
+        public long getInputBytes() { return inputBytes; }
+        public long getOutputBytes() { return outputBytes; }
+        public String getError() { return error; }
+        public boolean isFailed() { return error != null; }
+
+        public double getRatio() {
+            return inputBytes == 0 ? 1.0 : (double) outputBytes / inputBytes;
+        }
+    }
+
+    /**
+     * Итоги пакета: пропускная способность и степень сжатия
+     */
+    public static class BatchResult {
+        private final List<FileResult> files;
+        private final long elapsedNanos;
+
+        BatchResult(List<FileResult> files, long elapsedNanos) {
+            this.files = Collections.unmodifiableList(files);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<FileResult> getFiles() { return files; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        public int getCompletedCount() {
+            return (int) files.stream().filter(f -> !f.isFailed()).count();
+        }
+
+        public int getFailedCount() {
+            return files.size() - getCompletedCount();
+        }
+
+        public long getInputBytes() {
+            return files.stream().filter(f -> !f.isFailed()).mapToLong(FileResult::getInputBytes).sum();
+        }
+
+        public long getOutputBytes() {
+            return files.stream().filter(f -> !f.isFailed()).mapToLong(FileResult::getOutputBytes).sum();
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : getInputBytes() / (1024.0 * 1024.0) / (elapsedNanos / 1e9);
+        }
+
+        public double getFilesPerSecond() {
+            return elapsedNanos == 0 ? 0 : getCompletedCount() / (elapsedNanos / 1e9);
+        }
+
+        // Общая степень сжатия (выход / вход по байтам UTF-8)
+        public double getOverallRatio() {
+            long input = getInputBytes();
+            return input == 0 ? 1.0 : (double) getOutputBytes() / input;
+        }
+
+        public DoubleSummaryStatistics getRatioStatistics() {
+            return files.stream().filter(f -> !f.isFailed())
+                        .mapToDouble(FileResult::getRatio).summaryStatistics();
+        }
+
+        @Override
+        public String toString() {
+            DoubleSummaryStatistics ratios = getRatioStatistics();
+            return String.format(
+                "Файлов: %,d (ошибок: %d), вход: %.2f МБ, выход: %.2f МБ, время: %.2f с%n" +
+                "Скорость: %.2f МБ/с, %.1f файлов/с%n" +
+                "Сжатие: общее %.1f%%, по файлам среднее %.1f%%, лучшее %.1f%%, худшее %.1f%%",
+                getCompletedCount(), getFailedCount(),
+                getInputBytes() / (1024.0 * 1024.0), getOutputBytes() / (1024.0 * 1024.0),
+                elapsedNanos / 1e9, getMegabytesPerSecond(), getFilesPerSecond(),
+                getOverallRatio() * 100,
+                ratios.getCount() == 0 ? 100.0 : ratios.getAverage() * 100,
+                ratios.getCount() == 0 ? 100.0 : ratios.getMin() * 100,
+                ratios.getCount() == 0 ? 100.0 : ratios.getMax() * 100);
+        }
+    }
+
+    // === Поиск файлов ===
+
+    /**
+     * Файлы по каталогу (рекурсивно) или шаблону glob ("docs/**.txt").
+     * Уже сжатые файлы .saberw пропускаются
+     */
+    public static List<Path> findFiles(String pathOrGlob) throws IOException {
+        int globStart = indexOfGlob(pathOrGlob);
+        if (globStart < 0) {
+            Path path = Paths.get(pathOrGlob.isEmpty() ? "." : pathOrGlob);
+            if (Files.isDirectory(path)) {
+                return walk(path, p -> true);
+            }
+            return Files.isRegularFile(path) ? List.of(path) : List.of();
+        }
+
+        // Каталог поиска - часть пути до первого элемента с шаблоном
+        String pattern = pathOrGlob.replace('\\', '/');
+        int rootEnd = pattern.lastIndexOf('/', globStart);
+        Path root = rootEnd < 0 ? Paths.get(".")
+                                : Paths.get(rootEnd == 0 ? "/" : pattern.substring(0, rootEnd));
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+
+        // Шаблон сравнивается с путём в том же виде, в каком он задан
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        Path base = rootEnd < 0 ? root : null;
+        return walk(root, p -> matcher.matches(base == null ? p : base.relativize(p)));
+    }
+
+    private static List<Path> walk(Path root, Predicate<Path> filter) throws IOException {
+        try (Stream<Path> stream = Files.walk(root)) {
+            return stream.filter(Files::isRegularFile)
+                         .filter(p -> !p.getFileName().toString().endsWith(OUTPUT_EXTENSION))
+                         .filter(filter)
+                         .sorted()
+                         .collect(Collectors.toList());
+        }
+    }
+
+    // Позиция первого символа шаблона (-1 - обычный путь)
+    private static int indexOfGlob(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // === Сжатие ===
+
+    /**
+     * Сжать файлы; выход - рядом с исходным файлом (outputDirectory == null)
+     * или в outputDirectory с тем же путём относительно inputRoot
+     */
+    public BatchResult compress(List<Path> files, Path inputRoot, Path outputDirectory) {
+        long startTime = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Semaphore inFlight = new Semaphore(threads * 2);
+        List<Future<FileResult>> futures = new ArrayList<>(files.size());
+
+        try {
+            for (Path file : files) {
+                inFlight.acquireUninterruptibly();
+                Path output = resolveOutput(file, inputRoot, outputDirectory);
+                futures.add(pool.submit(() -> {
+                    try {
+                        return compressFile(file, output);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+
+            List<FileResult> results = new ArrayList<>(files.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Пакетное сжатие прервано", e);
+                } catch (ExecutionException e) {
+                    results.add(new FileResult(files.get(i), null, 0, 0,
+                                               String.valueOf(e.getCause())));
+                }
+            }
+            return new BatchResult(results, System.nanoTime() - startTime);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Сжать один файл (ошибка чтения/записи попадает в результат, а не наружу)
+     */
+    public FileResult compressFile(Path input, Path output) {
+        try {
+            byte[] bytes = Files.readAllBytes(input);
+            String text = new String(bytes, StandardCharsets.UTF_8);
+
+            String content;
+            if (sharedDictionary != null) {
+                content = sharedDictionary.compress(text).getCompressedText();
+            } else {
+                SaberWCore core = new SaberWCore(text);
+                core.setResultCache(resultCache);
+                core.setCostModel(costModel);
+                content = format(core.compress());
+            }
+            byte[] encoded = content.getBytes(StandardCharsets.UTF_8);
+
+            Path parent = output.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.write(output, encoded);
+            return new FileResult(input, output, bytes.length, encoded.length, null);
+        } catch (IOException | RuntimeException e) {
+            return new FileResult(input, output, 0, 0, e.toString());
+        }
+    }
+
+    /**
+     * Файл со своим словарём: словарь, перевод строки, сжатый текст
+     */
+    public static String format(CompressionResult result) {
+        return new DictionaryBuilder().formatDictionary(result.getDictionary()) + "\n" +
+               result.getCompressedText();
+    }
+
+    /**
+     * Разобрать файл со своим словарём (обратно к format)
+     */
+    public static CompressionResult parse(String content) {
+        int end = content.indexOf(DICTIONARY_END);
+        if (!content.startsWith("#") || end < 0) {
+            throw new IllegalArgumentException("Это не файл SaberW со словарём");
+        }
+        List<DictionaryEntry> dictionary =
+            new DictionaryBuilder().parseDictionary(content.substring(0, end + 1));
+        String compressed = content.substring(end + DICTIONARY_END.length());
+        return new CompressionResult(compressed, dictionary,
+            new CompressionResult.Statistics(0, content.length(), dictionary.size()));
+    }
+
+    static Path resolveOutput(Path file, Path inputRoot, Path outputDirectory) {
+        String name = file.getFileName() + OUTPUT_EXTENSION;
+        if (outputDirectory == null) {
+            return file.resolveSibling(name);
+        }
+        Path relative = inputRoot != null && file.startsWith(inputRoot)
+            ? inputRoot.relativize(file)
+            : file.getFileName();
+        Path parent = relative.getParent();
+        return parent == null ? outputDirectory.resolve(name)
+                              : outputDirectory.resolve(parent).resolve(name);
+    }
+}
@@ -0,0 +1,469 @@
+package com.saberw.core;
+
+import com.saberw.model.DictionaryEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Двоичный формат словаря (версия 1), читается через FileChannel.map без разбора.
+ *
+ *   Заголовок (HEADER_INTS целых): магия "SWDB", версия, число записей,
+ *     максимум токенов в записи, корзины и ячейки хэша, смещения секций,
+ *     диапазон первых символов кодов, идентификатор общего словаря
+ *   Таблица записей: по 5 целых - смещение и длина слова, смещение и длина кода, частота
+ *   Индекс слов и индекс кодов: идеальный хэш (hash and displace) -
+ *     сид на каждую корзину + ячейки с номером записи или -1
+ *   Пул строк: символы UTF-16 всех слов и кодов подряд
+ *
+ * Слова и коды хранятся как есть, поэтому '=' и любые другие символы допустимы.
+ */
+public class BinaryDictionary {
+
+    private static final int MAGIC = 0x53574442; // "SWDB"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 14;
+    private static final int ENTRY_INTS = 5;
+    private static final int MAX_SEED_ATTEMPTS = 1 << 20;
+
+    // Поля заголовка
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 1;
+    private static final int H_ENTRIES = 2;
+    private static final int H_MAX_TOKENS = 3;
+    private static final int H_BUCKETS = 4;
+    private static final int H_SLOTS = 5;
+    private static final int H_ENTRIES_OFFSET = 6;
+    private static final int H_WORD_INDEX_OFFSET = 7;
+    private static final int H_CODE_INDEX_OFFSET = 8;
+    private static final int H_POOL_OFFSET = 9;
+    private static final int H_POOL_CHARS = 10;
+    private static final int H_MIN_CODE_CHAR = 11;
+    private static final int H_MAX_CODE_CHAR = 12;
+    // Первые 4 байта SHA-256 строк словаря (id SharedDictionary); 0 - не записан
+    private static final int H_DICTIONARY_ID = 13;
+
+    private final int size;
+    private final int maxTokens;
+    private final int buckets;
+    private final int slots;
+    private final char minCodeChar;
+    private final char maxCodeChar;
+    private final int dictionaryId;
+
+    private final IntBuffer entries;
+    private final IntBuffer wordIndex;
+    private final IntBuffer codeIndex;
+    private final CharBuffer pool;
+
+    private BinaryDictionary(ByteBuffer buffer) {
+        IntBuffer header = buffer.duplicate().position(0).asIntBuffer();
+        if (header.capacity() < HEADER_INTS || header.get(H_MAGIC) != MAGIC) {
+            throw new IllegalArgumentException("Это не двоичный словарь SaberW");
+        }
+        if (header.get(H_VERSION) != VERSION) {
+            throw new IllegalArgumentException(
+                "Неподдерживаемая версия словаря: " + header.get(H_VERSION));
+        }
+
+        size = header.get(H_ENTRIES);
+        maxTokens = header.get(H_MAX_TOKENS);
+        buckets = header.get(H_BUCKETS);
+        slots = header.get(H_SLOTS);
+        minCodeChar = (char) header.get(H_MIN_CODE_CHAR);
+        maxCodeChar = (char) header.get(H_MAX_CODE_CHAR);
+        dictionaryId = header.get(H_DICTIONARY_ID);
+
+        entries = slice(buffer, header.get(H_ENTRIES_OFFSET), size * ENTRY_INTS * 4).asIntBuffer();
+        int indexBytes = (buckets + slots) * 4;
+        wordIndex = slice(buffer, header.get(H_WORD_INDEX_OFFSET), indexBytes).asIntBuffer();
+        codeIndex = slice(buffer, header.get(H_CODE_INDEX_OFFSET), indexBytes).asIntBuffer();
+        pool = slice(buffer, header.get(H_POOL_OFFSET), header.get(H_POOL_CHARS) * 2).asCharBuffer();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer copy = buffer.duplicate();
+        copy.position(offset).limit(offset + length);
+        return copy.slice();
+    }
+
+    // === Загрузка и запись ===
+
+    /**
+     * Отобразить файл в память: читается только заголовок, остальное - по запросу
+     */
+    public static BinaryDictionary map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BinaryDictionary(buffer);
+        }
+    }
+
+    public static BinaryDictionary wrap(ByteBuffer buffer) {
+        return new BinaryDictionary(buffer);
+    }
+
+    /**
+     * Является ли файл двоичным словарём (проверка магии)
+     */
+    public static boolean isBinaryDictionary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // читаем до четырёх байт
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    public static void write(List<DictionaryEntry> dictionary, Path file) throws IOException {
+        ByteBuffer buffer = toBuffer(dictionary);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Собрать двоичное представление словаря
+     */
+    public static ByteBuffer toBuffer(List<DictionaryEntry> dictionary) {
+        int n = dictionary.size();
+
+        // Пул строк и таблица записей
+        StringBuilder pool = new StringBuilder();
+        int[] table = new int[n * ENTRY_INTS];
+        int maxTokens = 0;
+        char minCodeChar = Character.MAX_VALUE;
+        char maxCodeChar = Character.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            DictionaryEntry entry = dictionary.get(i);
+            String word = entry.getWord();
+            String code = entry.getCode();
+            if (word == null || word.isEmpty() || code == null || code.isEmpty()) {
+                throw new IllegalArgumentException("Пустое слово или код в записи " + i);
+            }
+            table[i * ENTRY_INTS] = pool.length();
+            table[i * ENTRY_INTS + 1] = word.length();
+            pool.append(word);
+            table[i * ENTRY_INTS + 2] = pool.length();
+            table[i * ENTRY_INTS + 3] = code.length();
+            pool.append(code);
+            table[i * ENTRY_INTS + 4] = entry.getFrequency();
+
+            maxTokens = Math.max(maxTokens, countTokens(word));
+            minCodeChar = (char) Math.min(minCodeChar, code.charAt(0));
+            maxCodeChar = (char) Math.max(maxCodeChar, code.charAt(0));
+        }
+
+        // Индексы: слово - первая запись (как при кодировании), код - последняя (как при декодировании)
+        Map<String, Integer> wordKeys = new LinkedHashMap<>();
+        Map<String, Integer> codeKeys = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            wordKeys.putIfAbsent(dictionary.get(i).getWord(), i);
+            codeKeys.put(dictionary.get(i).getCode(), i);
+        }
+        int buckets = Math.max(1, n / 4);
+        int slots = Math.max(1, n + n / 4);
+        int[] wordIndex = buildPerfectHash(wordKeys, buckets, slots);
+        int[] codeIndex = buildPerfectHash(codeKeys, buckets, slots);
+
+        int entriesOffset = HEADER_INTS * 4;
+        int wordIndexOffset = entriesOffset + table.length * 4;
+        int codeIndexOffset = wordIndexOffset + wordIndex.length * 4;
+        int poolOffset = codeIndexOffset + codeIndex.length * 4;
+        int totalBytes = poolOffset + pool.length() * 2;
+
+        ByteBuffer buffer = ByteBuffer.allocate(totalBytes);
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.put(MAGIC).put(VERSION).put(n).put(maxTokens).put(buckets).put(slots)
+            .put(entriesOffset).put(wordIndexOffset).put(codeIndexOffset)
+            .put(poolOffset).put(pool.length())
+            .put(minCodeChar).put(maxCodeChar).put(SharedDictionary.idHash(dictionary));
+        ints.put(table).put(wordIndex).put(codeIndex);
+        buffer.position(poolOffset);
+        buffer.asCharBuffer().put(pool.toString());
+        buffer.position(0);
+        return buffer;
+    }
+
+    /**
+     * Идеальный хэш "hash and displace": ключи раскладываются по корзинам,
+     * для каждой корзины (от больших к малым) подбирается сид, при котором
+     * все её ключи попадают в свободные ячейки.
+     * @return сиды корзин, затем ячейки (номер записи или -1)
+     */
+    private static int[] buildPerfectHash(Map<String, Integer> keys, int buckets, int slots) {
+        List<List<String>> bucketKeys = new ArrayList<>(buckets);
+        for (int b = 0; b < buckets; b++) {
+            bucketKeys.add(new ArrayList<>());
+        }
+        for (String key : keys.keySet()) {
+            bucketKeys.get(Math.floorMod(hash(key, 0, key.length(), 0), buckets)).add(key);
+        }
+
+        Integer[] order = new Integer[buckets];
+        for (int b = 0; b < buckets; b++) {
+            order[b] = b;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(bucketKeys.get(b).size(),
+                                                     bucketKeys.get(a).size()));
+
+        int[] index = new int[buckets + slots];
+        Arrays.fill(index, buckets, index.length, -1);
+        int[] taken = new int[bucketKeys.isEmpty() ? 0 : bucketKeys.get(order[0]).size()];
+
+        for (int b : order) {
+            List<String> bucket = bucketKeys.get(b);
+            if (bucket.isEmpty()) {
+                break;
+            }
+            int seed = 1;
+            while (true) {
+                if (seed > MAX_SEED_ATTEMPTS) {
+                    throw new IllegalStateException("Не удалось построить идеальный хэш");
+                }
+                int placed = 0;
+                for (String key : bucket) {
+                    int slot = Math.floorMod(hash(key, 0, key.length(), seed), slots);
+                    boolean free = index[buckets + slot] < 0;
+                    for (int k = 0; k < placed && free; k++) {
+                        free = taken[k] != slot;
+                    }
+                    if (!free) {
+                        break;
+                    }
+                    taken[placed++] = slot;
+                }
+                if (placed == bucket.size()) {
+                    break;
+                }
+                seed++;
+            }
+            index[b] = seed;
+            for (int k = 0; k < bucket.size(); k++) {
+                index[buckets + taken[k]] = keys.get(bucket.get(k));
+            }
+        }
+        return index;
+    }
+
+    private static int hash(CharSequence text, int from, int to, int seed) {
+        int h = 0x811C9DC5 ^ (seed * 0x9E3779B9);
+        for (int i = from; i < to; i++) {
+            h = (h ^ text.charAt(i)) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private static int countTokens(String word) {
+        int count = 0;
+        int start = 0;
+        while (start < word.length()) {
+            start = Tokenizer.tokenEnd(word, start, word.length());
+            count++;
+        }
+        return count;
+    }
+
+    // === Доступ к записям ===
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Идентификатор общего словаря из заголовка (0 - файл записан без него)
+     */
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    /**
+     * Отметить в наборе все символы кодов (без создания строк)
+     */
+    public void collectCodeChars(BitSet codeChars) {
+        for (int i = 0; i < size; i++) {
+            int offset = entries.get(i * ENTRY_INTS + 2);
+            int length = entries.get(i * ENTRY_INTS + 3);
+            for (int k = 0; k < length; k++) {
+                codeChars.set(pool.get(offset + k));
+            }
+        }
+    }
+
+    public String getWord(int index) {
+        return poolString(entries.get(index * ENTRY_INTS), entries.get(index * ENTRY_INTS + 1));
+    }
+
+    public String getCode(int index) {
+        return poolString(entries.get(index * ENTRY_INTS + 2), entries.get(index * ENTRY_INTS + 3));
+    }
+
+    public int getFrequency(int index) {
+        return entries.get(index * ENTRY_INTS + 4);
+    }
+
+    // Символы слова и кода прямо из пула (без копирования в строку)
+    CharBuffer wordChars(int index) {
+        return poolSlice(entries.get(index * ENTRY_INTS), entries.get(index * ENTRY_INTS + 1));
+    }
+
+    CharBuffer codeChars(int index) {
+        return poolSlice(entries.get(index * ENTRY_INTS + 2), entries.get(index * ENTRY_INTS + 3));
+    }
+
+    public List<DictionaryEntry> toEntries() {
+        List<DictionaryEntry> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new DictionaryEntry(getWord(i), getCode(i), getFrequency(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Код для слова или фразы (участок текста [from, to)) или null
+     */
+    public String findCode(CharSequence text, int from, int to) {
+        int entry = find(wordIndex, text, from, to, 0);
+        return entry < 0 ? null : getCode(entry);
+    }
+
+    /**
+     * Слово для кода (участок текста [from, to)) или null
+     */
+    public String findWord(CharSequence text, int from, int to) {
+        int entry = find(codeIndex, text, from, to, 2);
+        return entry < 0 ? null : getWord(entry);
+    }
+
+    private int find(IntBuffer index, CharSequence text, int from, int to, int field) {
+        if (size == 0) {
+            return -1;
+        }
+        int bucket = Math.floorMod(hash(text, from, to, 0), buckets);
+        int slot = Math.floorMod(hash(text, from, to, index.get(bucket)), slots);
+        int entry = index.get(buckets + slot);
+        if (entry < 0) {
+            return -1;
+        }
+
+        // Ключ мог и не входить в словарь - сверяем с пулом
+        int offset = entries.get(entry * ENTRY_INTS + field);
+        int length = entries.get(entry * ENTRY_INTS + field + 1);
+        if (length != to - from) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            if (pool.get(offset + i) != text.charAt(from + i)) {
+                return -1;
+            }
+        }
+        return entry;
+    }
+
+    private CharBuffer poolSlice(int offset, int length) {
+        CharBuffer slice = pool.duplicate();
+        slice.position(offset).limit(offset + length);
+        return slice.slice();
+    }
+
+    private String poolString(int offset, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = pool.get(offset + i);
+        }
+        return new String(chars);
+    }
+
+    // === Кодирование прямо по отображённому словарю ===
+
+    /**
+     * Закодировать текст по целым токенам: в каждой позиции - самая длинная
+     * запись (до maxTokens токенов), результат совпадает с CompiledCodec.encode
+     */
+    public String encode(CharSequence text) {
+        int n = text.length();
+        StringBuilder result = new StringBuilder(n);
+        int[] ends = new int[Math.max(1, maxTokens)];
+
+        int start = 0;
+        while (start < n) {
+            int end = Tokenizer.tokenEnd(text, start, n);
+            if (size > 0 && Tokenizer.isWordAt(text, start, n)) {
+                // Концы следующих токенов - кандидаты на конец фразы
+                int count = 0;
+                ends[count++] = end;
+                while (count < ends.length && ends[count - 1] < n) {
+                    ends[count] = Tokenizer.tokenEnd(text, ends[count - 1], n);
+                    count++;
+                }
+
+                String code = null;
+                int matchedEnd = end;
+                for (int k = count - 1; k >= 0 && code == null; k--) {
+                    code = findCode(text, start, ends[k]);
+                    matchedEnd = ends[k];
+                }
+                if (code != null) {
+                    result.append(code);
+                    start = matchedEnd;
+                    continue;
+                }
+            }
+            result.append(text, start, end);
+            start = end;
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Декодировать текст: односимвольный код, затем двухсимвольный (как CodeDecoder)
+     */
+    public String decode(CharSequence text) {
+        int n = text.length();
+        StringBuilder result = new StringBuilder(n * 2);
+
+        int literalStart = 0;
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (size == 0 || c < minCodeChar || c > maxCodeChar) {
+                i++;
+                continue;
+            }
+
+            String word = findWord(text, i, i + 1);
+            int codeLength = 1;
+            if (word == null && i + 1 < n) {
+                word = findWord(text, i, i + 2);
+                codeLength = 2;
+            }
+            if (word == null) {
+                i++;
+                continue;
+            }
+
+            result.append(text, literalStart, i).append(word);
+            i += codeLength;
+            literalStart = i;
+        }
+        result.append(text, literalStart, n);
+
+        return result.toString();
+    }
+}
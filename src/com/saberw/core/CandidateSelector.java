@@ -0,0 +1,179 @@
+package com.saberw.core;
+
+import com.saberw.model.Candidate;
+import com.saberw.util.CharCostModel;
+import com.saberw.util.CodeSpace;
+import com.saberw.util.CostModel;
+import com.saberw.util.ImprovedCodeGenerator;
+
+import java.util.*;
+
+/**
+ * Совместный отбор слов и фраз по выгоде (ImprovedCodeGenerator.calculateBenefit)
+ * в единицах модели стоимости - символах или токенах.
+ * Кандидаты берутся жадно, от самого выгодного; вхождения уже выбранных
+ * кандидатов занимают текст, поэтому слова внутри закодированной фразы
+ * теряют частоту, а фразы поверх закодированных слов - свою.
+ */
+public class CandidateSelector {
+
+    private final CostModel costModel;
+
+    // Выгода считается до назначения кодов - с первым (самым дешёвым) кодом
+    // того пространства, из которого коды будут выданы
+    private final String unknownCode;
+
+    private static class Item {
+        final int index;
+        final int benefit;
+
+        Item(int index, int benefit) {
+            this.index = index;
+            this.benefit = benefit;
+        }
+    }
+
+    public CandidateSelector() {
+        this(CharCostModel.INSTANCE);
+    }
+
+    public CandidateSelector(CostModel costModel) {
+        this(costModel, CodeSpace.DEFAULT);
+    }
+
+    public CandidateSelector(CostModel costModel, CodeSpace codeSpace) {
+        this.costModel = costModel;
+        this.unknownCode = new String(Character.toChars(codeSpace.codePointAt(0)));
+    }
+
+    /**
+     * @param text         текст, по которому искались кандидаты
+     * @param words        кандидаты-слова (уже прошли пороги вызывающего кода)
+     * @param phrases      кандидаты-фразы из нескольких токенов
+     * @param minFrequency минимальная частота, остающаяся после учёта пересечений
+     * @return выбранные кандидаты в порядке выгоды, с частотой после пересечений
+     */
+    public List<Candidate> select(CharSequence text, List<Candidate> words,
+                                  List<Candidate> phrases, int minFrequency) {
+        List<Candidate> all = new ArrayList<>(words.size() + phrases.size());
+        all.addAll(words);
+        all.addAll(phrases);
+        if (all.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        int[][] occurrences = findOccurrences(text, all);
+
+        // Очередь по выгоде; при равенстве - исходный порядок кандидатов
+        PriorityQueue<Item> queue = new PriorityQueue<>((a, b) -> {
+            int cmp = Integer.compare(b.benefit, a.benefit);
+            return cmp != 0 ? cmp : Integer.compare(a.index, b.index);
+        });
+        for (int i = 0; i < all.size(); i++) {
+            int benefit = ImprovedCodeGenerator.calculateBenefit(all.get(i).getText(),
+                occurrences[i].length, unknownCode, costModel);
+            queue.add(new Item(i, benefit));
+        }
+
+        BitSet covered = new BitSet(text.length());
+        List<Candidate> selected = new ArrayList<>();
+
+        while (!queue.isEmpty()) {
+            Item item = queue.poll();
+            Candidate candidate = all.get(item.index);
+            int length = candidate.getText().length();
+
+            // Выгода только падает по мере занятия текста, поэтому
+            // пересчитываем её лениво - для того, кто сейчас во главе очереди
+            int frequency = countFree(occurrences[item.index], length, covered);
+            int benefit = ImprovedCodeGenerator.calculateBenefit(candidate.getText(),
+                frequency, unknownCode, costModel);
+            if (benefit < item.benefit) {
+                Item updated = new Item(item.index, benefit);
+                Item head = queue.peek();
+                if (head != null && queue.comparator().compare(head, updated) < 0) {
+                    queue.add(updated);
+                    continue;
+                }
+            }
+
+            boolean reduced = frequency < candidate.getFrequency();
+            if (frequency < minFrequency || (reduced || isPhrase(candidate)) && benefit <= 0) {
+                continue;
+            }
+
+            occupy(occurrences[item.index], length, covered);
+            selected.add(new Candidate(candidate.getText(), frequency));
+        }
+
+        return selected;
+    }
+
+    /**
+     * Вхождения, выровненные по границам токенов, для каждого кандидата
+     */
+    private int[][] findOccurrences(CharSequence text, List<Candidate> candidates) {
+        List<String> texts = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            texts.add(candidate.getText());
+        }
+        int[] matches = new DictionaryMatcher(texts).findAll(text);
+
+        int[] counts = new int[candidates.size()];
+        for (int m = 0; m < matches.length; m += 2) {
+            if (isAligned(text, matches[m], texts.get(matches[m + 1]).length())) {
+                counts[matches[m + 1]]++;
+            }
+        }
+
+        int[][] occurrences = new int[candidates.size()][];
+        for (int i = 0; i < occurrences.length; i++) {
+            occurrences[i] = new int[counts[i]];
+        }
+        Arrays.fill(counts, 0);
+        for (int m = 0; m < matches.length; m += 2) {
+            int index = matches[m + 1];
+            if (isAligned(text, matches[m], texts.get(index).length())) {
+                occurrences[index][counts[index]++] = matches[m];
+            }
+        }
+        return occurrences;
+    }
+
+    private static boolean isAligned(CharSequence text, int start, int length) {
+        return Tokenizer.isTokenBoundary(text, start)
+            && Tokenizer.isTokenBoundary(text, start + length);
+    }
+
+    // Сколько вхождений (слева направо, без самоперекрытий) ещё не занято
+    private static int countFree(int[] starts, int length, BitSet covered) {
+        int count = 0;
+        int lastEnd = 0;
+        for (int start : starts) {
+            if (start < lastEnd) continue;
+            int next = covered.nextSetBit(start);
+            if (next < 0 || next >= start + length) {
+                count++;
+                lastEnd = start + length;
+            }
+        }
+        return count;
+    }
+
+    private static void occupy(int[] starts, int length, BitSet covered) {
+        int lastEnd = 0;
+        for (int start : starts) {
+            if (start < lastEnd) continue;
+            int next = covered.nextSetBit(start);
+            if (next < 0 || next >= start + length) {
+                covered.set(start, start + length);
+                lastEnd = start + length;
+            }
+        }
+    }
+
+    private static boolean isPhrase(Candidate candidate) {
+        String text = candidate.getText();
+        return Tokenizer.tokenEnd(text, 0, text.length()) < text.length();
+    }
+}
@@ -0,0 +1,187 @@
+package com.saberw.core;
+
+import com.saberw.model.DictionaryEntry;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Декодер, скомпилированный из словаря один раз.
+ * Первый символ кода - индекс в прямой таблице (диапазон от младшего
+ * до старшего первого символа), двухсимвольные коды - во второй таблице
+ * первого символа (отсортированные вторые символы, двоичный поиск).
+ * При декодировании ничего не создаётся на каждый символ.
+ */
+public class CodeDecoder {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final char base;               // младший первый символ кода
+    private final String[] singleWords;    // односимвольный код -> слово
+    private final char[][] secondChars;    // вторые символы двухсимвольных кодов
+    private final String[][] bigramWords;  // ... и их слова
+
+    public CodeDecoder(List<DictionaryEntry> dictionary) {
+        // Как в прежнем декодере: при повторе кода побеждает последняя запись
+        Map<String, String> codeToWord = new LinkedHashMap<>();
+        for (DictionaryEntry entry : dictionary) {
+            String code = entry.getCode();
+            if (code != null && (code.length() == 1 || code.length() == 2)) {
+                codeToWord.put(code, entry.getWord());
+            }
+        }
+
+        if (codeToWord.isEmpty()) {
+            base = 0;
+            singleWords = new String[0];
+            secondChars = new char[0][];
+            bigramWords = new String[0][];
+            return;
+        }
+
+        char min = Character.MAX_VALUE;
+        char max = Character.MIN_VALUE;
+        for (String code : codeToWord.keySet()) {
+            min = (char) Math.min(min, code.charAt(0));
+            max = (char) Math.max(max, code.charAt(0));
+        }
+
+        base = min;
+        int size = max - min + 1;
+        singleWords = new String[size];
+        secondChars = new char[size][];
+        bigramWords = new String[size][];
+
+        // Двухсимвольные коды группируем по первому символу
+        Map<Character, TreeMap<Character, String>> bigrams = new HashMap<>();
+        for (Map.Entry<String, String> entry : codeToWord.entrySet()) {
+            String code = entry.getKey();
+            if (code.length() == 1) {
+                singleWords[code.charAt(0) - base] = entry.getValue();
+            } else {
+                bigrams.computeIfAbsent(code.charAt(0), k -> new TreeMap<>())
+                       .put(code.charAt(1), entry.getValue());
+            }
+        }
+        for (Map.Entry<Character, TreeMap<Character, String>> entry : bigrams.entrySet()) {
+            int index = entry.getKey() - base;
+            TreeMap<Character, String> seconds = entry.getValue();
+            secondChars[index] = new char[seconds.size()];
+            bigramWords[index] = new String[seconds.size()];
+            int k = 0;
+            for (Map.Entry<Character, String> second : seconds.entrySet()) {
+                secondChars[index][k] = second.getKey();
+                bigramWords[index][k] = second.getValue();
+                k++;
+            }
+        }
+    }
+
+    /**
+     * Декодировать текст целиком
+     */
+    public String decode(CharSequence text) {
+        int n = text.length();
+        StringBuilder result = new StringBuilder(n * 2);
+
+        int literalStart = 0;
+        int i = 0;
+        while (i < n) {
+            int index = text.charAt(i) - base;
+            if (index < 0 || index >= singleWords.length) {
+                i++;
+                continue;
+            }
+
+            String word = singleWords[index];
+            int codeLength = 1;
+            if (word == null && i + 1 < n) {
+                word = findBigram(index, text.charAt(i + 1));
+                codeLength = 2;
+            }
+            if (word == null) {
+                i++;
+                continue;
+            }
+
+            result.append(text, literalStart, i).append(word);
+            i += codeLength;
+            literalStart = i;
+        }
+        result.append(text, literalStart, n);
+
+        return result.toString();
+    }
+
+    /**
+     * Декодировать поток: читаем кусками в буфер, литералы пишем участками
+     */
+    public void decode(Reader input, Writer output) throws IOException {
+        char[] buffer = new char[DEFAULT_BUFFER_SIZE];
+        int length = 0;
+        boolean eof = false;
+
+        while (!eof || length > 0) {
+            if (!eof) {
+                int read = input.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    length += read;
+                }
+            }
+
+            int literalStart = 0;
+            int i = 0;
+            while (i < length) {
+                int index = buffer[i] - base;
+                if (index < 0 || index >= singleWords.length) {
+                    i++;
+                    continue;
+                }
+
+                String word = singleWords[index];
+                int codeLength = 1;
+                if (word == null && secondChars[index] != null) {
+                    if (i + 1 == length && !eof) {
+                        // Второй символ кода ещё не прочитан
+                        break;
+                    }
+                    if (i + 1 < length) {
+                        word = findBigram(index, buffer[i + 1]);
+                        codeLength = 2;
+                    }
+                }
+                if (word == null) {
+                    i++;
+                    continue;
+                }
+
+                output.write(buffer, literalStart, i - literalStart);
+                output.write(word);
+                i += codeLength;
+                literalStart = i;
+            }
+            output.write(buffer, literalStart, i - literalStart);
+
+            // Недочитанный первый символ кода переносим в начало буфера
+            int tail = length - i;
+            if (tail > 0) {
+                System.arraycopy(buffer, i, buffer, 0, tail);
+            }
+            length = tail;
+        }
+        output.flush();
+    }
+
+    private String findBigram(int index, char second) {
+        char[] seconds = secondChars[index];
+        if (seconds == null) {
+            return null;
+        }
+        int k = Arrays.binarySearch(seconds, second);
+        return k >= 0 ? bigramWords[index][k] : null;
+    }
+}
@@ -0,0 +1,385 @@
+package com.saberw.core;
+
+import com.saberw.model.DictionaryEntry;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Скомпилированный словарь: неизменяемый и потокобезопасный.
+ * Всё, что зависит только от словаря (таблицы слов и фраз, автомат поиска,
+ * таблицы декодера), строится один раз в конструкторе. encode/decode не
+ * готовят ничего на каждый вызов и могут вызываться из разных потоков.
+ */
+public final class CompiledCodec {
+
+    private final List<DictionaryEntry> dictionary;
+    private final boolean wholeTokensOnly;
+
+    // Целые токены: отдельные слова - по значению, фразы - по первому токену
+    private final Map<String, String> wordToCode;
+    private final Map<String, DictionaryEntry[]> phrasesByFirstToken;
+
+    // Любые подстроки: автомат Ахо-Корасик
+    private final DictionaryMatcher matcher;
+
+    private final CodeDecoder decoder;
+
+    // Все слова словаря - одиночные токены (для параллельной замены подстрок)
+    private final boolean singleTokenWords;
+
+    public static final int DEFAULT_PARALLEL_CHUNK_SIZE = 1 << 18; // 256K символов
+
+    public CompiledCodec(List<DictionaryEntry> dictionary) {
+        this(dictionary, true);
+    }
+
+    /**
+     * @param wholeTokensOnly true - записи заменяются только целыми токенами
+     *                        (как в SaberWCore), false - любыми подстроками
+     *                        (как в SaberWCompressor)
+     */
+    public CompiledCodec(List<DictionaryEntry> dictionary, boolean wholeTokensOnly) {
+        this.dictionary = Collections.unmodifiableList(new ArrayList<>(dictionary));
+        this.wholeTokensOnly = wholeTokensOnly;
+
+        Map<String, String> words = new HashMap<>();
+        Map<String, List<DictionaryEntry>> phrases = new HashMap<>();
+        if (wholeTokensOnly) {
+            for (DictionaryEntry entry : this.dictionary) {
+                String word = entry.getWord();
+                if (word == null || word.isEmpty() || entry.getCode() == null) {
+                    continue;
+                }
+                int firstEnd = Tokenizer.tokenEnd(word, 0, word.length());
+                if (firstEnd == word.length()) {
+                    words.putIfAbsent(word, entry.getCode());
+                } else {
+                    phrases.computeIfAbsent(word.substring(0, firstEnd),
+                        k -> new ArrayList<>()).add(entry);
+                }
+            }
+        }
+
+        // Среди фраз с общим первым токеном сначала пробуем самые длинные
+        Map<String, DictionaryEntry[]> sortedPhrases = new HashMap<>();
+        for (Map.Entry<String, List<DictionaryEntry>> entry : phrases.entrySet()) {
+            List<DictionaryEntry> list = entry.getValue();
+            list.sort((a, b) -> Integer.compare(b.getWord().length(), a.getWord().length()));
+            sortedPhrases.put(entry.getKey(), list.toArray(new DictionaryEntry[0]));
+        }
+
+        this.wordToCode = Collections.unmodifiableMap(words);
+        this.phrasesByFirstToken = Collections.unmodifiableMap(sortedPhrases);
+        this.matcher = wholeTokensOnly ? null : new DictionaryMatcher(this.dictionary, false);
+        this.decoder = new CodeDecoder(this.dictionary);
+
+        boolean singleTokens = true;
+        for (DictionaryEntry entry : this.dictionary) {
+            String word = entry.getWord();
+            if (word != null && !word.isEmpty()
+                    && Tokenizer.tokenEnd(word, 0, word.length()) != word.length()) {
+                singleTokens = false;
+                break;
+            }
+        }
+        this.singleTokenWords = singleTokens;
+    }
+
+    public List<DictionaryEntry> getDictionary() {
+        return dictionary;
+    }
+
+    public boolean isWholeTokensOnly() {
+        return wholeTokensOnly;
+    }
+
+    /**
+     * Закодировать текст: в каждой позиции - самая длинная подходящая запись
+     */
+    public String encode(CharSequence text) {
+        if (!wholeTokensOnly) {
+            return matcher.encode(text);
+        }
+
+        StringBuilder result = new StringBuilder(text.length());
+        encodeTokens(text, 0, text.length(), result, null);
+        return result.toString();
+    }
+
+    /**
+     * Параллельное кодирование в общем пуле, результат тот же, что у encode
+     */
+    public String encodeParallel(CharSequence text) {
+        return encodeParallel(text, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_CHUNK_SIZE);
+    }
+
+    /**
+     * Параллельное кодирование: текст режется по границам токенов на куски
+     * не меньше chunkSize, куски кодируются одновременно и склеиваются.
+     * Фраза может перейти через край куска - тогда следующий кусок
+     * подхватывается с той позиции, где закончилась фраза (разбор слева
+     * направо зависит только от позиции, поэтому дальше вывод совпадает).
+     * Результат совпадает с encode символ в символ.
+     */
+    public String encodeParallel(CharSequence text, ForkJoinPool pool, int chunkSize) {
+        int n = text.length();
+        if (n <= chunkSize || (!wholeTokensOnly && !singleTokenWords)) {
+            // Слова из нескольких токенов при замене подстрок могут
+            // пересечь любую границу - кодируем подряд
+            return encode(text);
+        }
+
+        // Границы кусков
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        for (int target = chunkSize; target < n; target += chunkSize) {
+            int bound = Math.max(target, bounds.get(bounds.size() - 1));
+            while (bound < n && !Tokenizer.isTokenBoundary(text, bound)) {
+                bound++;
+            }
+            if (bound < n && bound > bounds.get(bounds.size() - 1)) {
+                bounds.add(bound);
+            }
+        }
+        bounds.add(n);
+
+        List<Callable<EncodedChunk>> tasks = new ArrayList<>();
+        for (int k = 0; k + 1 < bounds.size(); k++) {
+            int from = bounds.get(k);
+            int to = bounds.get(k + 1);
+            tasks.add(() -> encodeChunk(text, from, to));
+        }
+
+        List<EncodedChunk> chunks = new ArrayList<>(tasks.size());
+        for (Future<EncodedChunk> future : pool.invokeAll(tasks)) {
+            try {
+                chunks.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Кодирование прервано", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Ошибка кодирования куска", e.getCause());
+            }
+        }
+
+        // Склейка: position - где находится последовательный разбор
+        StringBuilder result = new StringBuilder(n);
+        int position = 0;
+        for (EncodedChunk chunk : chunks) {
+            if (position >= chunk.to) {
+                continue; // кусок целиком внутри фразы предыдущего
+            }
+            if (position == chunk.from) {
+                result.append(chunk.output);
+                position = chunk.end;
+                continue;
+            }
+            // Предыдущий кусок закончился фразой внутри этого куска
+            int step = Arrays.binarySearch(chunk.positions, 0, chunk.steps, position);
+            if (step >= 0) {
+                result.append(chunk.output, chunk.offsets[step], chunk.output.length());
+                position = chunk.end;
+            } else {
+                position = encodeTokens(text, position, chunk.to, result, null);
+            }
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Оптимальный разбор: кратчайший путь по позициям токенов.
+     * Из токена i можно выдать его как есть (i -> i + 1) или код записи
+     * словаря, которая начинается в i (i -> токен после конца записи).
+     * Считаем с конца: best[i] - минимальная длина результата для токенов [i, n)
+     */
+    public String encodeOptimal(CharSequence text) {
+        if (!wholeTokensOnly) {
+            throw new IllegalStateException("Оптимальный разбор работает только по целым токенам");
+        }
+
+        int[] triples = Tokenizer.scan(text);
+        int n = triples.length / 3;
+        int[] starts = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            starts[i] = triples[i * 3];
+        }
+        starts[n] = text.length();
+
+        long[] best = new long[n + 1];
+        int[] nextToken = new int[n];
+        String[] chosenCode = new String[n];
+
+        for (int i = n - 1; i >= 0; i--) {
+            int start = starts[i];
+            int end = starts[i + 1];
+
+            // Токен как есть
+            best[i] = (end - start) + best[i + 1];
+            nextToken[i] = i + 1;
+
+            if (triples[i * 3 + 2] != Tokenizer.TYPE_WORD) {
+                continue;
+            }
+            String value = text.subSequence(start, end).toString();
+
+            String code = wordToCode.get(value);
+            if (code != null && code.length() + best[i + 1] < best[i]) {
+                best[i] = code.length() + best[i + 1];
+                chosenCode[i] = code;
+            }
+
+            DictionaryEntry[] phrases = phrasesByFirstToken.get(value);
+            if (phrases == null) {
+                continue;
+            }
+            for (DictionaryEntry phrase : phrases) {
+                if (!phraseMatchesAt(text, start, phrase.getWord())) {
+                    continue;
+                }
+                int next = Arrays.binarySearch(starts, i + 1, n + 1,
+                                               start + phrase.getWord().length());
+                if (phrase.getCode().length() + best[next] < best[i]) {
+                    best[i] = phrase.getCode().length() + best[next];
+                    nextToken[i] = next;
+                    chosenCode[i] = phrase.getCode();
+                }
+            }
+        }
+
+        // Восстанавливаем путь слева направо
+        StringBuilder result = new StringBuilder((int) Math.min(Integer.MAX_VALUE, best[0]));
+        int i = 0;
+        while (i < n) {
+            if (chosenCode[i] != null) {
+                result.append(chosenCode[i]);
+            } else {
+                result.append(text, starts[i], starts[i + 1]);
+            }
+            i = nextToken[i];
+        }
+
+        return result.toString();
+    }
+
+    public String decode(CharSequence text) {
+        return decoder.decode(text);
+    }
+
+    public void decode(Reader input, Writer output) throws IOException {
+        decoder.decode(input, output);
+    }
+
+    private EncodedChunk encodeChunk(CharSequence text, int from, int to) {
+        EncodedChunk chunk = new EncodedChunk(from, to);
+        if (wholeTokensOnly) {
+            chunk.end = encodeTokens(text, from, to, chunk.output, chunk);
+        } else {
+            // Все слова - одиночные токены: вхождения не переходят границ кусков
+            chunk.output.append(matcher.encode(text.subSequence(from, to)));
+            chunk.end = to;
+            chunk.record(from, 0);
+        }
+        return chunk;
+    }
+
+    /**
+     * Разбор по целым токенам, начиная с from и пока позиция меньше to.
+     * Последняя фраза может выйти за to; возвращается позиция конца разбора.
+     * trace (если задан) запоминает позицию и смещение вывода каждого шага
+     */
+    private int encodeTokens(CharSequence text, int from, int to,
+                             StringBuilder result, EncodedChunk trace) {
+        int n = text.length();
+        int start = from;
+        while (start < to) {
+            if (trace != null) {
+                trace.record(start, result.length());
+            }
+            int end = Tokenizer.tokenEnd(text, start, n);
+            if (Tokenizer.isWordAt(text, start, n)) {
+                String value = text.subSequence(start, end).toString();
+
+                DictionaryEntry phrase = longestPhraseAt(text, start, value);
+                if (phrase != null) {
+                    result.append(phrase.getCode());
+                    start += phrase.getWord().length();
+                    continue;
+                }
+
+                String code = wordToCode.get(value);
+                if (code != null) {
+                    result.append(code);
+                    start = end;
+                    continue;
+                }
+            }
+            result.append(text, start, end);
+            start = end;
+        }
+        return start;
+    }
+
+    /**
+     * Закодированный кусок [from, to) и позиции шагов разбора в нём
+     */
+    private static class EncodedChunk {
+        final int from;
+        final int to;
+        final StringBuilder output = new StringBuilder();
+        int end;
+        int[] positions = new int[64];
+        int[] offsets = new int[64];
+        int steps;
+
+        EncodedChunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        void record(int position, int offset) {
+            if (steps == positions.length) {
+                positions = Arrays.copyOf(positions, steps * 2);
+                offsets = Arrays.copyOf(offsets, steps * 2);
+            }
+            positions[steps] = position;
+            offsets[steps] = offset;
+            steps++;
+        }
+    }
+
+    private DictionaryEntry longestPhraseAt(CharSequence text, int start, String firstToken) {
+        DictionaryEntry[] phrases = phrasesByFirstToken.get(firstToken);
+        if (phrases != null) {
+            for (DictionaryEntry phrase : phrases) {
+                if (phraseMatchesAt(text, start, phrase.getWord())) {
+                    return phrase;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Фраза совпадает с текстом с позиции start и заканчивается на границе токенов
+     */
+    private static boolean phraseMatchesAt(CharSequence text, int start, String phrase) {
+        int end = start + phrase.length();
+        if (end > text.length()) {
+            return false;
+        }
+        for (int k = 0; k < phrase.length(); k++) {
+            if (text.charAt(start + k) != phrase.charAt(k)) {
+                return false;
+            }
+        }
+        return Tokenizer.isTokenBoundary(text, end);
+    }
+}
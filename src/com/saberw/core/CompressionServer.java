@@ -0,0 +1,303 @@
+package com.saberw.core;
+
+import com.saberw.model.CompressionResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Локальный HTTP-сервис сжатия: одна JVM обслуживает все вызовы,
+ * общие словари держатся в памяти уже скомпилированными.
+ *
+ *   POST /compress[?dictionary=<id>]      текст -> файл .saberw (BatchCompressor.format)
+ *                                         или сообщение общего словаря
+ *   POST /decompress                      обратно; общий словарь определяется по заголовку
+ *   POST /compress/batch[?dictionary=..]  много сообщений за один запрос
+ *   POST /decompress/batch
+ *   POST /dictionaries                    словарь (текстовый формат) -> его id
+ *   GET  /dictionaries                    id загруженных словарей, по одному в строке
+ *   GET  /stats                           счётчики кэша результатов
+ *
+ * Пакет - сообщения подряд, каждое в виде "<длина в символах>\n<текст>";
+ * ответ - в том же виде и в том же порядке. Всё в UTF-8.
+ * Запросы обрабатываются в виртуальных потоках, если JVM их поддерживает
+ * (Java 21+), иначе - в пуле потоков.
+ *
+ * Для быстрых ответов нужен TCP_NODELAY: -Dsun.net.httpserver.nodelay=true
+ * (иначе ответ задерживается на ~40 мс - алгоритм Нейгла и отложенное
+ * подтверждение). JDK читает это свойство один раз, при первом HttpServer
+ * в процессе, поэтому его задаёт запускающий код (SaberWServer), а не сервер.
+ */
+public class CompressionServer {
+
+    private static final String TEXT_TYPE = "text/plain; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, SharedDictionary> dictionaries = new ConcurrentHashMap<>();
+    private final ResultCache resultCache = new ResultCache();
+
+    public CompressionServer(int port) throws IOException {
+        // Только localhost: сервис для своих процессов, не для сети
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.executor = createExecutor();
+        server.setExecutor(executor);
+
+        server.createContext("/compress", handler(this::handleCompress));
+        server.createContext("/decompress", handler(this::handleDecompress));
+        server.createContext("/dictionaries", handler(this::handleDictionaries));
+        server.createContext("/stats", handler((exchange, body) ->
+            "GET".equals(exchange.getRequestMethod()) ? resultCache + "\n" : null));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * Фактический порт (при запуске с портом 0 его выбирает система)
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // === Словари ===
+
+    public String addDictionary(SharedDictionary dictionary) {
+        dictionaries.put(dictionary.getId(), dictionary);
+        return dictionary.getId();
+    }
+
+    public String loadDictionary(Path file) throws IOException {
+        return addDictionary(SharedDictionary.load(file));
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public Set<String> getDictionaryIds() {
+        return Collections.unmodifiableSet(dictionaries.keySet());
+    }
+
+    // === Операции (доступны и без HTTP) ===
+
+    public String compress(String text, String dictionaryId) {
+        if (dictionaryId == null || dictionaryId.isEmpty()) {
+            SaberWCore core = new SaberWCore(text);
+            core.setResultCache(resultCache);
+            return BatchCompressor.format(core.compress());
+        }
+        return findDictionary(dictionaryId).compress(text).getCompressedText();
+    }
+
+    public String decompress(String compressed) {
+        if (compressed.startsWith("SW:")) {
+            String id = SharedDictionary.readDictionaryId(compressed);
+            if (id.isEmpty()) {
+                // Сообщение только с дополнениями - подойдёт любой словарь
+                return new SharedDictionary(List.of()).decompress(compressed);
+            }
+            return findDictionary(id).decompress(compressed);
+        }
+        CompressionResult result = BatchCompressor.parse(compressed);
+        SaberWCore core = new SaberWCore("");
+        core.setResultCache(resultCache);
+        return core.decompress(result.getCompressedText(), result.getDictionary());
+    }
+
+    private SharedDictionary findDictionary(String id) {
+        SharedDictionary dictionary = dictionaries.get(id);
+        if (dictionary == null) {
+            throw new IllegalArgumentException("Словарь не загружен: " + id);
+        }
+        return dictionary;
+    }
+
+    // === Обработчики ===
+
+    private interface Handler {
+        String handle(HttpExchange exchange, String body) throws IOException;
+    }
+
+    private HttpHandler handler(Handler handler) {
+        return exchange -> {
+            try {
+                String body = readBody(exchange);
+                int status = 200;
+                String response;
+                try {
+                    response = handler.handle(exchange, body);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    status = 400;
+                    response = "Ошибка: " + e.getMessage() + "\n";
+                } catch (RuntimeException e) {
+                    status = 500;
+                    response = "Ошибка сервера: " + e + "\n";
+                }
+                if (response == null) {
+                    status = 404;
+                    response = "Неизвестный запрос: " + exchange.getRequestMethod() + " " +
+                               exchange.getRequestURI().getPath() + "\n";
+                }
+                byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", TEXT_TYPE);
+                exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+                if (bytes.length > 0) {
+                    try (OutputStream output = exchange.getResponseBody()) {
+                        output.write(bytes);
+                    }
+                }
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private String handleCompress(HttpExchange exchange, String body) {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return null;
+        }
+        String dictionaryId = queryParameter(exchange, "dictionary");
+        switch (exchange.getRequestURI().getPath()) {
+            case "/compress":
+                return compress(body, dictionaryId);
+            case "/compress/batch":
+                List<String> results = new ArrayList<>();
+                for (String message : parseBatch(body)) {
+                    results.add(compress(message, dictionaryId));
+                }
+                return formatBatch(results);
+            default:
+                return null;
+        }
+    }
+
+    private String handleDecompress(HttpExchange exchange, String body) {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return null;
+        }
+        switch (exchange.getRequestURI().getPath()) {
+            case "/decompress":
+                return decompress(body);
+            case "/decompress/batch":
+                List<String> results = new ArrayList<>();
+                for (String message : parseBatch(body)) {
+                    results.add(decompress(message));
+                }
+                return formatBatch(results);
+            default:
+                return null;
+        }
+    }
+
+    private String handleDictionaries(HttpExchange exchange, String body) {
+        if (!"/dictionaries".equals(exchange.getRequestURI().getPath())) {
+            return null;
+        }
+        if ("GET".equals(exchange.getRequestMethod())) {
+            StringBuilder result = new StringBuilder();
+            for (String id : new TreeSet<>(dictionaries.keySet())) {
+                result.append(id).append('\n');
+            }
+            return result.toString();
+        }
+        if ("POST".equals(exchange.getRequestMethod())) {
+            return addDictionary(new SharedDictionary(new DictionaryBuilder().parseDictionary(body))) + "\n";
+        }
+        return null;
+    }
+
+    // === Пакеты ===
+
+    /**
+     * Разобрать пакет "<длина>\n<текст>" ...
+     */
+    public static List<String> parseBatch(String body) {
+        List<String> messages = new ArrayList<>();
+        int position = 0;
+        while (position < body.length()) {
+            int lineEnd = body.indexOf('\n', position);
+            if (lineEnd < 0) {
+                throw new IllegalArgumentException("Повреждён пакет: нет длины сообщения");
+            }
+            int length;
+            try {
+                length = Integer.parseInt(body.substring(position, lineEnd).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Повреждён пакет: неверная длина сообщения");
+            }
+            int start = lineEnd + 1;
+            if (length < 0 || start + length > body.length()) {
+                throw new IllegalArgumentException("Повреждён пакет: сообщение обрезано");
+            }
+            messages.add(body.substring(start, start + length));
+            position = start + length;
+        }
+        return messages;
+    }
+
+    public static String formatBatch(List<String> messages) {
+        StringBuilder result = new StringBuilder();
+        for (String message : messages) {
+            result.append(message.length()).append('\n').append(message);
+        }
+        return result.toString();
+    }
+
+    // === Вспомогательное ===
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String key = separator < 0 ? pair : pair.substring(0, separator);
+            if (key.equals(name)) {
+                return separator < 0 ? "" :
+                    URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Виртуальные потоки (Java 21+) ищем через reflection, чтобы код
+     * собирался и на Java 17; там используется обычный пул
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(
+                Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        }
+    }
+}
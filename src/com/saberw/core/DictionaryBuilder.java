@@ -88,4 +88,21 @@ public class DictionaryBuilder {
         sb.append("# END #");
         return sb.toString();
     }
+    
+    // Разбор текстового вида словаря (строки "# ... #" - заголовки)
+    public List<DictionaryEntry> parseDictionary(String text) {
+        List<DictionaryEntry> dictionary = new ArrayList<>();
+        for (String line : text.split("\r?\n")) {
+            // Коды никогда не начинаются с '#'
+            if (line.startsWith("#")) {
+                continue;
+            }
+            int separator = line.indexOf('=');
+            if (separator > 0) {
+                dictionary.add(new DictionaryEntry(line.substring(separator + 1),
+                                                   line.substring(0, separator), 0));
+            }
+        }
+        return dictionary;
+    }
 }
\ No newline at end of file
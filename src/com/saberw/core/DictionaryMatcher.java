@@ -0,0 +1,340 @@
+package com.saberw.core;
+
+import com.saberw.model.DictionaryEntry;
+
+import java.util.*;
+
+/**
+ * Многошаблонный поиск слов словаря (автомат Ахо-Корасик).
+ * Автомат строится один раз по словарю, текст кодируется за один проход
+ * в новый буфер. Результат совпадает с прежней последовательной заменой
+ * "от длинных слов к коротким" через indexOf/replace.
+ */
+public class DictionaryMatcher {
+
+    private static final int ROOT = 0;
+    private static final long EMPTY_KEY = -1L;
+
+    // Слова и коды в порядке приоритета (от длинных к коротким)
+    private final String[] words;
+    private final String[] codes;
+    private final boolean wholeWordsOnly;
+
+    // Бор: переходы (состояние, символ) -> состояние в открытой хэш-таблице
+    private long[] transitionKeys;
+    private int[] transitionValues;
+
+    // Состояния автомата
+    private int stateCount;
+    private int[] fail;        // суффиксная ссылка
+    private int[] terminal;    // номер слова, которое заканчивается в состоянии, или -1
+    private int[] outputLink;  // ближайшее терминальное состояние по суффиксным ссылкам
+    private int[] firstChild;
+    private int[] nextSibling;
+    private char[] edgeChars;  // символ ребра, ведущего в состояние
+
+    public DictionaryMatcher(List<DictionaryEntry> dictionary, boolean wholeWordsOnly) {
+        this.wholeWordsOnly = wholeWordsOnly;
+
+        // Сортируем слова по длине (от длинных к коротким), порядок равных сохраняется
+        List<DictionaryEntry> sortedDict = new ArrayList<>();
+        for (DictionaryEntry entry : dictionary) {
+            if (entry.getWord() != null && !entry.getWord().isEmpty() && entry.getCode() != null) {
+                sortedDict.add(entry);
+            }
+        }
+        sortedDict.sort((a, b) -> Integer.compare(b.getWord().length(),
+                                                 a.getWord().length()));
+
+        this.words = new String[sortedDict.size()];
+        this.codes = new String[sortedDict.size()];
+        for (int i = 0; i < sortedDict.size(); i++) {
+            words[i] = sortedDict.get(i).getWord();
+            codes[i] = sortedDict.get(i).getCode();
+        }
+
+        buildTrie();
+        buildFailureLinks();
+    }
+
+    /**
+     * Автомат только для поиска (без кодов): номера слов в findAll
+     * совпадают с порядком в исходном списке
+     */
+    public DictionaryMatcher(List<String> searchWords) {
+        this.wholeWordsOnly = false;
+        this.words = searchWords.toArray(new String[0]);
+        this.codes = null;
+
+        buildTrie();
+        buildFailureLinks();
+    }
+
+    /**
+     * Все вхождения всех слов (в том числе пересекающиеся), по возрастанию конца.
+     * Результат - пары подряд: начало вхождения, номер слова
+     */
+    public int[] findAll(CharSequence text) {
+        int[] matches = new int[32];
+        int count = 0;
+
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+
+            int out = terminal[state] >= 0 ? state : outputLink[state];
+            while (out >= 0) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                int word = terminal[out];
+                matches[count++] = i + 1 - words[word].length();
+                matches[count++] = word;
+                out = outputLink[out];
+            }
+        }
+
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Закодировать текст: каждое найденное слово заменяется своим кодом
+     */
+    public String encode(CharSequence text) {
+        if (codes == null) {
+            throw new IllegalStateException("Автомат построен без кодов - доступен только поиск");
+        }
+        int n = text.length();
+        if (n == 0 || words.length == 0) {
+            return text.toString();
+        }
+
+        // 1. Один проход автомата: собираем все вхождения всех слов
+        int[] matchWord = new int[16];
+        int[] matchStart = new int[16];
+        int matchCount = 0;
+
+        int state = ROOT;
+        for (int i = 0; i < n; i++) {
+            state = step(state, text.charAt(i));
+
+            int out = terminal[state] >= 0 ? state : outputLink[state];
+            while (out >= 0) {
+                if (matchCount == matchWord.length) {
+                    matchWord = Arrays.copyOf(matchWord, matchCount * 2);
+                    matchStart = Arrays.copyOf(matchStart, matchCount * 2);
+                }
+                int word = terminal[out];
+                matchWord[matchCount] = word;
+                matchStart[matchCount] = i + 1 - words[word].length();
+                matchCount++;
+                out = outputLink[out];
+            }
+        }
+
+        // 2. Группируем вхождения по словам (внутри слова - по возрастанию позиции)
+        int[] offsets = new int[words.length + 1];
+        for (int m = 0; m < matchCount; m++) {
+            offsets[matchWord[m] + 1]++;
+        }
+        for (int w = 0; w < words.length; w++) {
+            offsets[w + 1] += offsets[w];
+        }
+        int[] starts = new int[matchCount];
+        int[] fill = Arrays.copyOf(offsets, words.length);
+        for (int m = 0; m < matchCount; m++) {
+            starts[fill[matchWord[m]]++] = matchStart[m];
+        }
+
+        // 3. Разрешаем пересечения так же, как последовательная замена:
+        //    слова по приоритету, вхождения слева направо
+        int[] cover = new int[n];
+        Arrays.fill(cover, -1);
+        BitSet replacedStarts = new BitSet(n);
+
+        for (int w = 0; w < words.length; w++) {
+            int length = words[w].length();
+            for (int k = offsets[w]; k < offsets[w + 1]; k++) {
+                int start = starts[k];
+                int end = start + length;
+
+                // Уже заменённые участки не короче текущего слова,
+                // поэтому пересечение всегда задевает один из концов
+                if (cover[start] >= 0 || cover[end - 1] >= 0) {
+                    continue;
+                }
+                if (wholeWordsOnly && !isWholeWord(text, start, end, cover)) {
+                    continue;
+                }
+
+                Arrays.fill(cover, start, end, w);
+                replacedStarts.set(start);
+            }
+        }
+
+        // 4. Собираем результат в новый буфер
+        StringBuilder result = new StringBuilder(n);
+        int i = 0;
+        while (i < n) {
+            if (replacedStarts.get(i)) {
+                int w = cover[i];
+                result.append(codes[w]);
+                i += words[w].length();
+            } else {
+                int next = replacedStarts.nextSetBit(i);
+                if (next < 0) {
+                    next = n;
+                }
+                result.append(text, i, next);
+                i = next;
+            }
+        }
+
+        return result.toString();
+    }
+
+    private boolean isWholeWord(CharSequence text, int start, int end, int[] cover) {
+        // Соседи проверяются так, как они выглядят после уже сделанных замен:
+        // на месте заменённого слова стоит его код
+        if (start > 0) {
+            int left = cover[start - 1];
+            char c = left >= 0 ? codes[left].charAt(codes[left].length() - 1)
+                               : text.charAt(start - 1);
+            if (Character.isLetterOrDigit(c)) {
+                return false;
+            }
+        }
+        if (end < text.length()) {
+            int right = cover[end];
+            char c = right >= 0 ? codes[right].charAt(0) : text.charAt(end);
+            if (Character.isLetterOrDigit(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int next = transition(state, c);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    // === Построение автомата ===
+
+    private void buildTrie() {
+        int capacity = 16;
+        for (String word : words) {
+            capacity += word.length();
+        }
+
+        fail = new int[capacity];
+        terminal = new int[capacity];
+        outputLink = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        edgeChars = new char[capacity];
+        Arrays.fill(terminal, -1);
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        transitionKeys = new long[tableSize];
+        transitionValues = new int[tableSize];
+        Arrays.fill(transitionKeys, EMPTY_KEY);
+
+        stateCount = 1; // корень
+
+        for (int w = 0; w < words.length; w++) {
+            String word = words[w];
+            int state = ROOT;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                int next = transition(state, c);
+                if (next < 0) {
+                    next = stateCount++;
+                    putTransition(state, c, next);
+                    edgeChars[next] = c;
+                    nextSibling[next] = firstChild[state];
+                    firstChild[state] = next;
+                }
+                state = next;
+            }
+            // Повторное слово в словаре никогда не будет найдено, как и раньше
+            if (terminal[state] < 0) {
+                terminal[state] = w;
+            }
+        }
+    }
+
+    private void buildFailureLinks() {
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+
+        fail[ROOT] = ROOT;
+        outputLink[ROOT] = -1;
+        for (int child = firstChild[ROOT]; child >= 0; child = nextSibling[child]) {
+            fail[child] = ROOT;
+            outputLink[child] = -1;
+            queue[tail++] = child;
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            for (int child = firstChild[state]; child >= 0; child = nextSibling[child]) {
+                char c = edgeChars[child];
+
+                int f = fail[state];
+                int next;
+                while ((next = transition(f, c)) < 0 && f != ROOT) {
+                    f = fail[f];
+                }
+                fail[child] = next >= 0 ? next : ROOT;
+
+                int target = fail[child];
+                outputLink[child] = terminal[target] >= 0 ? target : outputLink[target];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    private int transition(int state, char c) {
+        long key = ((long) state << 16) | c;
+        int mask = transitionKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            long existing = transitionKeys[slot];
+            if (existing == key) {
+                return transitionValues[slot];
+            }
+            if (existing == EMPTY_KEY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void putTransition(int state, char c, int target) {
+        long key = ((long) state << 16) | c;
+        int mask = transitionKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (transitionKeys[slot] != EMPTY_KEY) {
+            slot = (slot + 1) & mask;
+        }
+        transitionKeys[slot] = key;
+        transitionValues[slot] = target;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,177 @@
+package com.saberw.core;
+
+import com.saberw.model.TokenTable;
+import com.saberw.util.WordCounter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Параллельный подсчёт частот слов (ForkJoin).
+ * Текст делится пополам по границам токенов, пока кусок больше chunkSize;
+ * каждый кусок считается в свой WordCounter, результаты сливаются слева направо.
+ * Если токены уже разобраны в TokenTable, делятся диапазоны токенов таблицы -
+ * текст повторно не сканируется.
+ * Счётчики и порядок первого появления ключей - те же, что при проходе подряд.
+ */
+public class FrequencyCounter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20; // 1M символов
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public FrequencyCounter() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public FrequencyCounter(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Размер куска должен быть положительным: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Частоты всех слов текста (ключи - участки текста)
+     */
+    public WordCounter countWords(CharSequence text) {
+        if (text.length() <= chunkSize) {
+            return countRange(text, 0, text.length());
+        }
+        return pool.invoke(new CountTask(text, 0, text.length()));
+    }
+
+    /**
+     * Частоты слов, прошедших фильтр. Фильтр вызывается один раз на
+     * различное слово, а не на каждое вхождение
+     */
+    public Map<String, Integer> countWords(CharSequence text, Predicate<String> filter) {
+        return filter(countWords(text), filter);
+    }
+
+    /**
+     * Частоты всех слов по готовой таблице токенов
+     */
+    public WordCounter countWords(TokenTable tokens) {
+        if (tokens.getText().length() <= chunkSize) {
+            return countTokens(tokens, 0, tokens.size());
+        }
+        return pool.invoke(new TokenCountTask(tokens, 0, tokens.size()));
+    }
+
+    /**
+     * Частоты слов таблицы, прошедших фильтр (фильтр - один раз на различное слово)
+     */
+    public Map<String, Integer> countWords(TokenTable tokens, Predicate<String> filter) {
+        return filter(countWords(tokens), filter);
+    }
+
+    private static Map<String, Integer> filter(WordCounter counter, Predicate<String> filter) {
+        Map<String, Integer> frequency = new HashMap<>();
+        counter.forEach((word, count) -> {
+            if (filter.test(word)) {
+                frequency.put(word, count);
+            }
+        });
+        return frequency;
+    }
+
+    /**
+     * Подсчёт подряд на участке [from, to); края участка - границы токенов
+     */
+    static WordCounter countRange(CharSequence text, int from, int to) {
+        WordCounter counter = new WordCounter(text);
+        int start = from;
+        while (start < to) {
+            int end = Tokenizer.tokenEnd(text, start, to);
+            if (Tokenizer.isWordAt(text, start, to)) {
+                counter.add(start, end);
+            }
+            start = end;
+        }
+        return counter;
+    }
+
+    /**
+     * Подсчёт подряд по токенам таблицы [from, to)
+     */
+    static WordCounter countTokens(TokenTable tokens, int from, int to) {
+        WordCounter counter = new WordCounter(tokens.getText());
+        for (int i = from; i < to; i++) {
+            if (tokens.isWord(i)) {
+                counter.add(tokens.getStart(i), tokens.getEnd(i));
+            }
+        }
+        return counter;
+    }
+
+    private class CountTask extends RecursiveTask<WordCounter> {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence text;
+        private final int from;
+        private final int to;
+
+        CountTask(CharSequence text, int from, int to) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected WordCounter compute() {
+            if (to - from <= chunkSize) {
+                return countRange(text, from, to);
+            }
+
+            // Середину сдвигаем вперёд до границы токенов
+            int middle = from + (to - from) / 2;
+            while (middle < to && !Tokenizer.isTokenBoundary(text, middle)) {
+                middle++;
+            }
+            if (middle >= to) {
+                return countRange(text, from, to);
+            }
+
+            CountTask right = new CountTask(text, middle, to);
+            right.fork();
+            WordCounter left = new CountTask(text, from, middle).compute();
+            left.merge(right.join());
+            return left;
+        }
+    }
+
+    private class TokenCountTask extends RecursiveTask<WordCounter> {
+        private static final long serialVersionUID = 1L;
+
+        private final TokenTable tokens;
+        private final int from;
+        private final int to;
+
+        TokenCountTask(TokenTable tokens, int from, int to) {
+            this.tokens = tokens;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected WordCounter compute() {
+            // Границы токенов уже известны: делим диапазон пополам по номеру
+            if (to - from < 2 || tokens.getEnd(to - 1) - tokens.getStart(from) <= chunkSize) {
+                return countTokens(tokens, from, to);
+            }
+
+            int middle = (from + to) >>> 1;
+            TokenCountTask right = new TokenCountTask(tokens, middle, to);
+            right.fork();
+            WordCounter left = new TokenCountTask(tokens, from, middle).compute();
+            left.merge(right.join());
+            return left;
+        }
+    }
+}
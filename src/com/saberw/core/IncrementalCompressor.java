@@ -0,0 +1,349 @@
+package com.saberw.core;
+
+import com.saberw.model.*;
+import com.saberw.util.ImprovedCodeGenerator;
+import com.saberw.util.ValidationHelper;
+
+import java.util.*;
+
+/**
+ * Инкрементальное сжатие редактируемого документа.
+ * Между правками хранятся колонки токенов, частоты слов и словарь.
+ * Правка заново разбирает только токены, которые она задевает;
+ * коды уже выданных слов не меняются, поэтому отправленное ранее
+ * сжатое начало остаётся верным, и досылается только изменение (Delta).
+ * Кодируются отдельные слова (по целым токенам, как в SaberWCore).
+ * Слово, получившее код при правке, заменяется только в новом участке;
+ * прежние его вхождения остаются как есть до recompressAll().
+ */
+public class IncrementalCompressor {
+
+    // Конфигурация по умолчанию - как в SaberWCore
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int MIN_FREQUENCY = 2;
+    private static final int MIN_FREQUENCY_FOR_2CHARS = 6;
+
+    private final int minWordLength;
+    private final int minFrequency;
+    private final int minFrequencyFor2Chars;
+
+    private String text;
+
+    // Колонки токенов
+    private int tokenCount;
+    private int[] starts;
+    private boolean[] wordFlags;
+    private int[] encodedLengths; // длина токена в сжатом тексте
+
+    private Map<String, Integer> frequency;
+    private Map<String, String> wordToCode;
+    private List<DictionaryEntry> dictionary;
+    private Set<Character> codeChars;
+    private ImprovedCodeGenerator codeGenerator;
+    private StringBuilder compressed;
+
+    /**
+     * Изменение сжатого текста после правки: участок [compressedStart, compressedEnd)
+     * прежнего сжатого текста заменяется на replacement; newEntries - записи,
+     * добавленные в словарь этой правкой
+     */
+    public static class Delta {
+        private final int compressedStart;
+        private final int compressedEnd;
+        private final String replacement;
+        private final List<DictionaryEntry> newEntries;
+        private final boolean fullRecompression;
+
+        Delta(int compressedStart, int compressedEnd, String replacement,
+              List<DictionaryEntry> newEntries, boolean fullRecompression) {
+            this.compressedStart = compressedStart;
+            this.compressedEnd = compressedEnd;
+            this.replacement = replacement;
+            this.newEntries = newEntries;
+            this.fullRecompression = fullRecompression;
+        }
+
+        public int getCompressedStart() { return compressedStart; }
+        public int getCompressedEnd() { return compressedEnd; }
+        public String getReplacement() { return replacement; }
+        public List<DictionaryEntry> getNewEntries() { return newEntries; }
+
+        /**
+         * Словарь пересобран заново: прежние коды недействительны,
+         * replacement - весь сжатый текст, newEntries - весь словарь
+         */
+        public boolean isFullRecompression() { return fullRecompression; }
+
+        /**
+         * Применить изменение к прежнему сжатому тексту
+         */
+        public String apply(String previousCompressed) {
+            return previousCompressed.substring(0, compressedStart) + replacement +
+                   previousCompressed.substring(compressedEnd);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Delta[%d..%d -> %d chars, +%d entries%s]",
+                compressedStart, compressedEnd, replacement.length(), newEntries.size(),
+                fullRecompression ? ", full" : "");
+        }
+    }
+
+    public IncrementalCompressor(String text) {
+        this(text, MIN_WORD_LENGTH, MIN_FREQUENCY, MIN_FREQUENCY_FOR_2CHARS);
+    }
+
+    public IncrementalCompressor(String text, int minWordLength, int minFrequency,
+                                 int minFrequencyFor2Chars) {
+        this.minWordLength = minWordLength;
+        this.minFrequency = minFrequency;
+        this.minFrequencyFor2Chars = minFrequencyFor2Chars;
+        this.text = text == null ? "" : text;
+        recompressAll();
+    }
+
+    public String getText() { return text; }
+    public String getCompressedText() { return compressed.toString(); }
+    public List<DictionaryEntry> getDictionary() { return Collections.unmodifiableList(dictionary); }
+
+    public CompressionResult getResult() {
+        String compressedText = compressed.toString();
+        int dictSize = 0;
+        for (DictionaryEntry entry : dictionary) {
+            dictSize += entry.getCode().length() + entry.getWord().length() + 3; // "= \n"
+        }
+        return new CompressionResult(compressedText, new ArrayList<>(dictionary),
+            new CompressionResult.Statistics(text.length(), compressedText.length() + dictSize,
+                                             dictionary.size()));
+    }
+
+    /**
+     * Дописать текст в конец (например, новую реплику чата)
+     */
+    public Delta append(String addition) {
+        return replace(text.length(), text.length(), addition);
+    }
+
+    /**
+     * Заменить участок [start, end) текста
+     */
+    public Delta replace(int start, int end, String replacement) {
+        if (start < 0 || end < start || end > text.length()) {
+            throw new IndexOutOfBoundsException(
+                "Неверный участок правки: " + start + ".." + end + " при длине " + text.length());
+        }
+        if (replacement == null) {
+            replacement = "";
+        }
+        String newText = text.substring(0, start) + replacement + text.substring(end);
+
+        // Вставка содержит символы уже выданных кодов - коды пришлось бы менять
+        for (int i = 0; i < replacement.length(); i++) {
+            if (codeChars.contains(replacement.charAt(i))) {
+                int previousLength = compressed.length();
+                text = newText;
+                recompressAll();
+                return new Delta(0, previousLength, compressed.toString(),
+                                 new ArrayList<>(dictionary), true);
+            }
+        }
+        codeGenerator.addTextCharacters(replacement);
+
+        // 1. Затронутые токены: от токена перед правкой до токена сразу после неё
+        int first = start > 0 ? tokenAt(start - 1) : 0;
+        int last = end < text.length() ? tokenAt(end) + 1 : tokenCount;
+        int regionStart = first < tokenCount ? starts[first] : start;
+        int regionEnd = last > 0 ? tokenEnd(last - 1) : end;
+
+        int compressedStart = 0;
+        for (int i = 0; i < first; i++) {
+            compressedStart += encodedLengths[i];
+        }
+        int compressedEnd = compressedStart;
+        for (int i = first; i < last; i++) {
+            compressedEnd += encodedLengths[i];
+            if (wordFlags[i]) {
+                frequency.computeIfPresent(tokenValue(text, i), (k, v) -> v > 1 ? v - 1 : null);
+            }
+        }
+
+        // 2. Разбираем участок нового текста; его границы не меняются,
+        //    потому что символы по обе стороны от них правка не затронула
+        int newRegionEnd = regionEnd + replacement.length() - (end - start);
+        int[] newStarts = new int[16];
+        boolean[] newWords = new boolean[16];
+        int newCount = 0;
+        for (int s = regionStart; s < newRegionEnd; ) {
+            int e = Tokenizer.tokenEnd(newText, s, newRegionEnd);
+            if (newCount == newStarts.length) {
+                newStarts = Arrays.copyOf(newStarts, newCount * 2);
+                newWords = Arrays.copyOf(newWords, newCount * 2);
+            }
+            newStarts[newCount] = s;
+            newWords[newCount] = Tokenizer.isWordAt(newText, s, newRegionEnd);
+            if (newWords[newCount]) {
+                frequency.merge(newText.substring(s, e), 1, Integer::sum);
+            }
+            newCount++;
+            s = e;
+        }
+
+        // 3. Слова участка, которые теперь проходят пороги, получают новые коды
+        List<Candidate> candidates = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int k = 0; k < newCount; k++) {
+            if (!newWords[k]) continue;
+            int e = k + 1 < newCount ? newStarts[k + 1] : newRegionEnd;
+            String word = newText.substring(newStarts[k], e);
+            if (!wordToCode.containsKey(word) && seen.add(word)) {
+                addCandidate(candidates, word, frequency.getOrDefault(word, 0));
+            }
+        }
+        List<DictionaryEntry> newEntries = assignCodes(candidates);
+
+        // 4. Кодируем участок
+        StringBuilder regionCompressed = new StringBuilder();
+        int[] newLengths = new int[newCount];
+        for (int k = 0; k < newCount; k++) {
+            int e = k + 1 < newCount ? newStarts[k + 1] : newRegionEnd;
+            String code = newWords[k] ? wordToCode.get(newText.substring(newStarts[k], e)) : null;
+            if (code != null) {
+                regionCompressed.append(code);
+                newLengths[k] = code.length();
+            } else {
+                regionCompressed.append(newText, newStarts[k], e);
+                newLengths[k] = e - newStarts[k];
+            }
+        }
+
+        // 5. Вклеиваем новые токены в колонки, сдвигаем начала токенов после участка
+        int shift = replacement.length() - (end - start);
+        int newTokenCount = tokenCount - (last - first) + newCount;
+        int[] mergedStarts = new int[Math.max(16, newTokenCount)];
+        boolean[] mergedWords = new boolean[mergedStarts.length];
+        int[] mergedLengths = new int[mergedStarts.length];
+
+        System.arraycopy(starts, 0, mergedStarts, 0, first);
+        System.arraycopy(wordFlags, 0, mergedWords, 0, first);
+        System.arraycopy(encodedLengths, 0, mergedLengths, 0, first);
+
+        System.arraycopy(newStarts, 0, mergedStarts, first, newCount);
+        System.arraycopy(newWords, 0, mergedWords, first, newCount);
+        System.arraycopy(newLengths, 0, mergedLengths, first, newCount);
+
+        int tail = tokenCount - last;
+        for (int i = 0; i < tail; i++) {
+            mergedStarts[first + newCount + i] = starts[last + i] + shift;
+        }
+        System.arraycopy(wordFlags, last, mergedWords, first + newCount, tail);
+        System.arraycopy(encodedLengths, last, mergedLengths, first + newCount, tail);
+
+        starts = mergedStarts;
+        wordFlags = mergedWords;
+        encodedLengths = mergedLengths;
+        tokenCount = newTokenCount;
+        text = newText;
+
+        String replacementCompressed = regionCompressed.toString();
+        compressed.replace(compressedStart, compressedEnd, replacementCompressed);
+        return new Delta(compressedStart, compressedEnd, replacementCompressed, newEntries, false);
+    }
+
+    /**
+     * Пересобрать всё заново (новый словарь и новые коды)
+     */
+    public void recompressAll() {
+        TokenTable tokens = new Tokenizer().tokenizeTable(text);
+        tokenCount = tokens.size();
+        starts = new int[Math.max(16, tokenCount)];
+        wordFlags = new boolean[starts.length];
+        encodedLengths = new int[starts.length];
+
+        frequency = new HashMap<>();
+        for (int i = 0; i < tokenCount; i++) {
+            starts[i] = tokens.getStart(i);
+            wordFlags[i] = tokens.isWord(i);
+            if (wordFlags[i]) {
+                frequency.merge(tokens.getValue(i), 1, Integer::sum);
+            }
+        }
+
+        wordToCode = new HashMap<>();
+        dictionary = new ArrayList<>();
+        codeChars = new HashSet<>();
+        codeGenerator = new ImprovedCodeGenerator(text);
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : frequency.entrySet()) {
+            addCandidate(candidates, entry.getKey(), entry.getValue());
+        }
+        assignCodes(candidates);
+
+        compressed = new StringBuilder(text.length());
+        for (int i = 0; i < tokenCount; i++) {
+            String code = wordFlags[i] ? wordToCode.get(tokens.getValue(i)) : null;
+            if (code != null) {
+                compressed.append(code);
+                encodedLengths[i] = code.length();
+            } else {
+                compressed.append(text, starts[i], tokenEnd(i));
+                encodedLengths[i] = tokenEnd(i) - starts[i];
+            }
+        }
+    }
+
+    private void addCandidate(List<Candidate> candidates, String word, int freq) {
+        if (ValidationHelper.isAlphanumericWord(word) &&
+            ValidationHelper.shouldEncodeWord(word, freq, minWordLength,
+                                              minFrequency, minFrequencyFor2Chars)) {
+            candidates.add(new Candidate(word, freq));
+        }
+    }
+
+    /**
+     * Назначить коды кандидатам (по выгоде, как в SaberWCore) и дописать их в словарь
+     */
+    private List<DictionaryEntry> assignCodes(List<Candidate> candidates) {
+        candidates.sort((a, b) -> Integer.compare(
+            ImprovedCodeGenerator.calculateBenefit(b.getText(), b.getFrequency(), "?"),
+            ImprovedCodeGenerator.calculateBenefit(a.getText(), a.getFrequency(), "?")));
+
+        List<DictionaryEntry> added = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            try {
+                String code = codeGenerator.nextCode();
+                if (!codeGenerator.isCodeSafe(code)) {
+                    continue;
+                }
+                DictionaryEntry entry = new DictionaryEntry(candidate.getText(), code,
+                                                            candidate.getFrequency());
+                wordToCode.put(candidate.getText(), code);
+                dictionary.add(entry);
+                added.add(entry);
+                for (int i = 0; i < code.length(); i++) {
+                    codeChars.add(code.charAt(i));
+                }
+            } catch (IllegalStateException e) {
+                System.err.println("Не удалось назначить код для: " +
+                                 candidate.getText() + " - " + e.getMessage());
+                break;
+            }
+        }
+        return added;
+    }
+
+    // Токен, которому принадлежит позиция текста
+    private int tokenAt(int position) {
+        int index = Arrays.binarySearch(starts, 0, tokenCount, position);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private int tokenEnd(int index) {
+        return index + 1 < tokenCount ? starts[index + 1] : text.length();
+    }
+
+    private String tokenValue(String source, int index) {
+        return source.substring(starts[index], tokenEnd(index));
+    }
+}
@@ -1,18 +1,35 @@
 package com.saberw.core;
 
 import com.saberw.model.Token;
+import com.saberw.model.TokenTable;
 import com.saberw.model.Candidate;
+import com.saberw.util.SuffixArray;
 import com.saberw.util.ValidationHelper;
+import com.saberw.util.WordCounter;
 
 import java.util.*;
 
 public class PhraseFinder {
     
+    // Основание полиномиального хэша (по модулю 2^64)
+    private static final long HASH_BASE = 0x100000001B3L;
+    
     // Основной метод поиска фраз с использованием хэш-таблиц
     public List<Candidate> findPhrasesOptimized(List<Token> tokens, 
                                                 int maxPhraseTokens, 
                                                 int minFrequency, 
                                                 int minPhraseLength) {
+        if (tokens == null || tokens.size() < 2) {
+            return new ArrayList<>();
+        }
+        return findPhrasesOptimized(TokenTable.fromTokens(tokens), maxPhraseTokens, 
+                                    minFrequency, minPhraseLength);
+    }
+    
+    public List<Candidate> findPhrasesOptimized(TokenTable tokens, 
+                                                int maxPhraseTokens, 
+                                                int minFrequency, 
+                                                int minPhraseLength) {
         
         List<Candidate> candidates = new ArrayList<>();
         
@@ -20,78 +37,77 @@ public class PhraseFinder {
             return candidates;
         }
         
-        // Создаем список значений токенов для удобства
-        List<String> tokenValues = new ArrayList<>();
-        for (Token token : tokens) {
-            tokenValues.add(token.getValue());
-        }
-        
-        // Мапа для хранения фраз и их частот
-        Map<String, Integer> phraseFrequencies = new HashMap<>();
-        
-        // Хэш-таблица для быстрого поиска дубликатов
-        Map<Integer, List<PhrasePosition>> hashToPositions = new HashMap<>();
+        // Токены -> номера: дальше работаем только с int
+        int[] ids = internTokens(tokens);
+        int tokenCount = ids.length;
+        long[] hashes = new long[tokenCount];
         
         // Перебираем все возможные длины фраз
         for (int phraseLength = 2; phraseLength <= maxPhraseTokens; phraseLength++) {
-            if (phraseLength > tokenValues.size()) break;
-            
-            // Очищаем хэш-таблицу для новой длины
-            hashToPositions.clear();
+            if (phraseLength > tokenCount) break;
+            int windows = tokenCount - phraseLength + 1;
             
-            // Вычисляем хэш для первой фразы
-            StringBuilder firstPhraseBuilder = new StringBuilder();
-            for (int i = 0; i < phraseLength; i++) {
-                firstPhraseBuilder.append(tokenValues.get(i));
+            // B^(phraseLength-1) для удаления первого номера из окна
+            long highPower = 1;
+            for (int j = 1; j < phraseLength; j++) {
+                highPower *= HASH_BASE;
             }
-            String firstPhrase = firstPhraseBuilder.toString();
-            int firstHash = firstPhrase.hashCode();
             
-            // Добавляем первую позицию
-            List<PhrasePosition> positions = new ArrayList<>();
-            positions.add(new PhrasePosition(0, firstPhrase));
-            hashToPositions.put(firstHash, positions);
+            // 1. Полиномиальный rolling hash по окнам номеров токенов
+            long hash = 0;
+            for (int j = 0; j < phraseLength; j++) {
+                hash = hash * HASH_BASE + ids[j] + 1;
+            }
+            hashes[0] = hash;
+            for (int i = 1; i < windows; i++) {
+                hash = (hash - (ids[i - 1] + 1) * highPower) * HASH_BASE + ids[i + phraseLength - 1] + 1;
+                hashes[i] = hash;
+            }
             
-            // Используем rolling hash для эффективного вычисления
-            for (int i = 1; i <= tokenValues.size() - phraseLength; i++) {
-                // Быстрое обновление фразы (удаляем первый токен, добавляем последний)
-                String previousFirstToken = tokenValues.get(i - 1);
-                String newLastToken = tokenValues.get(i + phraseLength - 1);
-                
-                // Получаем предыдущую фразу
-                String prevPhrase = getPhrase(tokenValues, i - 1, phraseLength);
-                String currentPhrase = prevPhrase.substring(previousFirstToken.length()) + newLastToken;
-                
-                int currentHash = currentPhrase.hashCode();
-                
-                // Добавляем в хэш-таблицу
-                positions = hashToPositions.get(currentHash);
-                if (positions == null) {
-                    positions = new ArrayList<>();
-                    hashToPositions.put(currentHash, positions);
+            // 2. Считаем окна по хэшам (короткие по символам окна не нужны вовсе:
+            //    все вхождения одной фразы имеют одинаковую длину)
+            HashCounter buckets = new HashCounter(windows);
+            for (int i = 0; i < windows; i++) {
+                if (phraseChars(tokens, i, phraseLength) >= minPhraseLength) {
+                    buckets.add(hashes[i], i);
                 }
-                positions.add(new PhrasePosition(i, currentPhrase));
             }
             
-            // Теперь обрабатываем найденные фразы с одинаковым хэшем
-            for (List<PhrasePosition> phrasePositions : hashToPositions.values()) {
-                if (phrasePositions.size() < minFrequency) {
+            // 3. Для частых корзин проверяем точное совпадение номеров с первым окном корзины
+            WordCounter collisions = null;
+            for (int i = 0; i < windows; i++) {
+                int slot = buckets.find(hashes[i]);
+                if (slot < 0 || buckets.counts[slot] < minFrequency ||
+                    phraseChars(tokens, i, phraseLength) < minPhraseLength) {
                     continue;
                 }
                 
-                // Группируем идентичные фразы (на случай коллизий хэша)
-                Map<String, Integer> exactMatches = new HashMap<>();
-                for (PhrasePosition pos : phrasePositions) {
-                    exactMatches.put(pos.phrase, exactMatches.getOrDefault(pos.phrase, 0) + 1);
+                int first = buckets.firstPositions[slot];
+                if (sameWindow(ids, first, i, phraseLength)) {
+                    buckets.exactCounts[slot]++;
+                } else {
+                    // Коллизия хэша - считаем такие фразы по строкам
+                    if (collisions == null) collisions = new WordCounter(tokens.getText(), 16);
+                    collisions.add(tokens.getStart(i), tokens.getEnd(i + phraseLength - 1));
                 }
-                
-                // Добавляем фразы, удовлетворяющие условиям
-                for (Map.Entry<String, Integer> entry : exactMatches.entrySet()) {
-                    if (entry.getValue() >= minFrequency && entry.getKey().length() >= minPhraseLength) {
-                        candidates.add(new Candidate(entry.getKey(), entry.getValue()));
-                    }
+            }
+            
+            // 4. Строки создаём только для фраз, которые действительно частые
+            for (int slot = 0; slot < buckets.keys.length; slot++) {
+                if (buckets.exactCounts[slot] >= minFrequency) {
+                    int first = buckets.firstPositions[slot];
+                    candidates.add(new Candidate(tokens.getText(first, first + phraseLength),
+                                                 buckets.exactCounts[slot]));
                 }
             }
+            if (collisions != null) {
+                List<Candidate> result = candidates;
+                collisions.forEach((phrase, count) -> {
+                    if (count >= minFrequency) {
+                        result.add(new Candidate(phrase, count));
+                    }
+                });
+            }
         }
         
         // Удаляем дубликаты (фразы могут быть найдены для разных длин)
@@ -107,36 +123,26 @@ public class PhraseFinder {
         return candidates;
     }
     
-    // Вспомогательный метод для получения фразы
-    private String getPhrase(List<String> tokenValues, int start, int length) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = start; i < start + length && i < tokenValues.size(); i++) {
-            sb.append(tokenValues.get(i));
-        }
-        return sb.toString();
-    }
-    
     // Удаляем дубликаты и подфразы
-    private List<Candidate> removeDuplicatePhrases(List<Candidate> candidates) {
+    List<Candidate> removeDuplicatePhrases(List<Candidate> candidates) {
         List<Candidate> result = new ArrayList<>();
-        Set<String> seenPhrases = new HashSet<>();
         
         // Сортируем по длине (от длинных к коротким)
         candidates.sort((a, b) -> Integer.compare(b.getText().length(), a.getText().length()));
         
+        int totalChars = 0;
+        for (Candidate candidate : candidates) {
+            totalChars += candidate.getText().length();
+        }
+        
+        // Индекс подстрок всех принятых фраз: проверка за O(длины фразы)
+        SubstringIndex seenPhrases = new SubstringIndex(totalChars);
+        
         for (Candidate candidate : candidates) {
             String phrase = candidate.getText();
-            boolean isSubphrase = false;
             
             // Проверяем, не является ли эта фраза подфразой уже добавленной более длинной фразы
-            for (String existingPhrase : seenPhrases) {
-                if (existingPhrase.contains(phrase)) {
-                    isSubphrase = true;
-                    break;
-                }
-            }
-            
-            if (!isSubphrase) {
+            if (!seenPhrases.contains(phrase)) {
                 result.add(candidate);
                 seenPhrases.add(phrase);
             }
@@ -145,14 +151,60 @@ public class PhraseFinder {
         return result;
     }
     
-    // Внутренний класс для хранения позиции фразы
-    private static class PhrasePosition {
-        final int startIndex;
-        final String phrase;
-        
-        PhrasePosition(int startIndex, String phrase) {
-            this.startIndex = startIndex;
-            this.phrase = phrase;
+    private static int phraseChars(TokenTable tokens, int start, int phraseLength) {
+        return tokens.getEnd(start + phraseLength - 1) - tokens.getStart(start);
+    }
+    
+    private static boolean sameWindow(int[] ids, int first, int second, int length) {
+        for (int j = 0; j < length; j++) {
+            if (ids[first + j] != ids[second + j]) return false;
+        }
+        return true;
+    }
+    
+    // Счётчик окон по хэшу: открытая адресация, без упаковки в объекты
+    private static class HashCounter {
+        final long[] keys;
+        final boolean[] used;
+        final int[] counts;
+        final int[] exactCounts;
+        final int[] firstPositions;
+        
+        HashCounter(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+            keys = new long[capacity];
+            used = new boolean[capacity];
+            counts = new int[capacity];
+            exactCounts = new int[capacity];
+            firstPositions = new int[capacity];
+        }
+        
+        void add(long key, int position) {
+            int mask = keys.length - 1;
+            int slot = spread(key) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                firstPositions[slot] = position;
+            }
+            counts[slot]++;
+        }
+        
+        int find(long key) {
+            int mask = keys.length - 1;
+            int slot = spread(key) & mask;
+            while (used[slot]) {
+                if (keys[slot] == key) return slot;
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+        
+        private static int spread(long key) {
+            return (int) (key ^ (key >>> 29) ^ (key >>> 47));
         }
     }
     
@@ -161,68 +213,97 @@ public class PhraseFinder {
                                                       int maxPhraseTokens, 
                                                       int minFrequency, 
                                                       int minPhraseLength) {
+        return findPhrasesWithSuffixArray(TokenTable.fromTokens(tokens), maxPhraseTokens, 
+                                          minFrequency, minPhraseLength);
+    }
+    
+    public List<Candidate> findPhrasesWithSuffixArray(TokenTable tokens, 
+                                                      int maxPhraseTokens, 
+                                                      int minFrequency, 
+                                                      int minPhraseLength) {
         List<Candidate> candidates = new ArrayList<>();
         
-        // Создаем строковое представление токенов с разделителями
-        StringBuilder textBuilder = new StringBuilder();
-        for (Token token : tokens) {
-            textBuilder.append(token.getValue());
+        if (tokens == null || tokens.size() < 2 || maxPhraseTokens < 2) {
+            return candidates;
         }
-        String text = textBuilder.toString();
         
-        // Создаем массив начальных позиций токенов
-        int[] tokenStarts = new int[tokens.size()];
-        int position = 0;
-        for (int i = 0; i < tokens.size(); i++) {
-            tokenStarts[i] = position;
-            position += tokens.get(i).getValue().length();
+        // 1. Токены -> номера, суффиксный массив и LCP над номерами
+        int[] ids = internTokens(tokens);
+        int upper = 0;
+        for (int id : ids) {
+            upper = Math.max(upper, id);
         }
+        int[] sa = SuffixArray.build(ids, upper);
+        int[] lcp = SuffixArray.lcp(ids, sa);
         
-        // Находим все повторяющиеся подстроки минимальной длины
-        Map<String, Integer> phraseMap = new HashMap<>();
+        // 2. Обходим LCP-интервалы снизу вверх (стек).
+        //    Интервал [left, right] с lcp = L и родительским lcp = P означает:
+        //    все n-граммы длины P+1..L, начинающиеся в sa[left], встречаются right-left+1 раз.
+        int n = ids.length;
+        int[] stackLcp = new int[n + 1];
+        int[] stackLeft = new int[n + 1];
+        int top = 0;
+        stackLcp[0] = 0;
+        stackLeft[0] = 0;
         
-        // Используем окно для поиска повторов
-        for (int windowSize = minPhraseLength; windowSize <= maxPhraseTokens * 10; windowSize++) {
-            // Это упрощенный алгоритм - в реальности нужно реализовать суффиксный массив
-            // или использовать библиотеку
-            
-            Map<String, Integer> windowPhrases = new HashMap<>();
+        for (int i = 1; i <= n; i++) {
+            // Длинные общие префиксы нам не нужны - обрезаем до maxPhraseTokens
+            int current = i < n ? Math.min(lcp[i - 1], maxPhraseTokens) : 0;
+            int left = i - 1;
             
-            for (int i = 0; i <= text.length() - windowSize; i++) {
-                String substring = text.substring(i, i + windowSize);
+            while (current < stackLcp[top]) {
+                int intervalLcp = stackLcp[top];
+                int intervalLeft = stackLeft[top];
+                top--;
                 
-                // Проверяем, что подстрока начинается и заканчивается на границе токена
-                if (isOnTokenBoundary(i, windowSize, tokenStarts)) {
-                    windowPhrases.put(substring, windowPhrases.getOrDefault(substring, 0) + 1);
+                int parentLcp = Math.max(current, stackLcp[top]);
+                int count = i - intervalLeft;
+                if (count >= minFrequency) {
+                    addPhrases(tokens, sa[intervalLeft], parentLcp + 1, intervalLcp,
+                               count, minPhraseLength, candidates);
                 }
+                left = intervalLeft;
             }
             
-            // Добавляем фразы с достаточной частотой
-            for (Map.Entry<String, Integer> entry : windowPhrases.entrySet()) {
-                if (entry.getValue() >= minFrequency) {
-                    phraseMap.put(entry.getKey(), entry.getValue());
-                }
+            if (current > stackLcp[top]) {
+                top++;
+                stackLcp[top] = current;
+                stackLeft[top] = left;
             }
         }
         
-        // Конвертируем в кандидаты
-        for (Map.Entry<String, Integer> entry : phraseMap.entrySet()) {
-            candidates.add(new Candidate(entry.getKey(), entry.getValue()));
-        }
+        // Удаляем подфразы и сортируем так же, как основной метод
+        candidates = removeDuplicatePhrases(candidates);
+        candidates.sort((a, b) -> {
+            int scoreA = a.getText().length() * a.getFrequency();
+            int scoreB = b.getText().length() * b.getFrequency();
+            return Integer.compare(scoreB, scoreA);
+        });
         
         return candidates;
     }
     
-    private boolean isOnTokenBoundary(int start, int length, int[] tokenStarts) {
-        // Проверяем, что start и start+length находятся на границах токенов
-        boolean startOk = false;
-        boolean endOk = false;
-        
-        for (int tokenStart : tokenStarts) {
-            if (tokenStart == start) startOk = true;
-            if (tokenStart == start + length) endOk = true;
+    // Все n-граммы длины [fromTokens, toTokens] с началом в позиции start
+    private void addPhrases(TokenTable tokens, int start, int fromTokens, int toTokens,
+                            int count, int minPhraseLength, List<Candidate> candidates) {
+        for (int length = Math.max(fromTokens, 2); length <= toTokens; length++) {
+            int chars = tokens.getEnd(start + length - 1) - tokens.getStart(start);
+            if (chars >= minPhraseLength) {
+                candidates.add(new Candidate(tokens.getText(start, start + length), count));
+            }
+        }
+    }
+    
+    // Одинаковые токены получают одинаковые номера (в порядке первого появления);
+    // токены сравниваются прямо в тексте таблицы, без строк
+    private int[] internTokens(TokenTable tokens) {
+        WordCounter idByValue = new WordCounter(tokens.getText());
+        int[] ids = new int[tokens.size()];
+        
+        for (int i = 0; i < tokens.size(); i++) {
+            ids[i] = idByValue.intern(tokens.getStart(i), tokens.getEnd(i));
         }
         
-        return startOk && endOk;
+        return ids;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,192 @@
+package com.saberw.core;
+
+import com.saberw.model.CompressionResult;
+import com.saberw.model.DictionaryEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Кэш результатов сжатия и распаковки (LRU).
+ * Ключ - SHA-256 от операции, параметров и входного текста, поэтому в памяти
+ * не хранятся сами входы. Ограничен числом записей и суммарным размером
+ * результатов в символах; ведёт счётчики попаданий, промахов и вытеснений.
+ * Потокобезопасен: один кэш можно отдать нескольким SaberWCore.
+ */
+public class ResultCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final long DEFAULT_MAX_CHARS = 32L * 1024 * 1024; // 64 МБ в UTF-16
+
+    private final int maxEntries;
+    private final long maxChars;
+
+    // Порядок доступа: первая запись - давно не использованная
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalChars;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static class Entry {
+        final Object value;
+        final long chars;
+
+        Entry(Object value, long chars) {
+            this.value = value;
+            this.chars = chars;
+        }
+    }
+
+    public ResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_CHARS);
+    }
+
+    public ResultCache(int maxEntries, long maxChars) {
+        if (maxEntries < 1 || maxChars < 1) {
+            throw new IllegalArgumentException("Размеры кэша должны быть положительными");
+        }
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Результат сжатия из кэша или вычисленный compute.
+     * Вычисление идёт без блокировки: одинаковые запросы из разных потоков
+     * могут посчитать результат дважды, но ждать друг друга не будут
+     */
+    public CompressionResult compress(String text, Object[] parameters,
+                                      Supplier<CompressionResult> compute) {
+        String key = key("compress", parameters, text);
+        CompressionResult cached = (CompressionResult) get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompressionResult result = compute.get();
+        // Список словаря отдаём только для чтения: результат общий для всех попаданий
+        result = new CompressionResult(result.getCompressedText(),
+            Collections.unmodifiableList(new ArrayList<>(result.getDictionary())),
+            result.getStats());
+        long chars = result.getCompressedText().length();
+        for (DictionaryEntry entry : result.getDictionary()) {
+            chars += entry.getWord().length() + entry.getCode().length();
+        }
+        put(key, result, chars);
+        return result;
+    }
+
+    /**
+     * Распакованный текст из кэша или вычисленный compute
+     */
+    public String decompress(String compressedText, List<DictionaryEntry> dictionary,
+                             Supplier<String> compute) {
+        StringBuilder parameters = new StringBuilder();
+        for (DictionaryEntry entry : dictionary) {
+            parameters.append(entry.getCode()).append('=').append(entry.getWord()).append('\n');
+        }
+        String key = key("decompress", new Object[] {parameters}, compressedText);
+        String cached = (String) get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        String result = compute.get();
+        put(key, result, result.length());
+        return result;
+    }
+
+    private synchronized Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    private synchronized void put(String key, Object value, long chars) {
+        if (chars > maxChars) {
+            return; // больше всего кэша - не храним
+        }
+        Entry previous = entries.put(key, new Entry(value, chars));
+        if (previous != null) {
+            totalChars -= previous.chars;
+        }
+        totalChars += chars;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || totalChars > maxChars) {
+            totalChars -= eldest.next().chars;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalChars = 0;
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getTotalChars() { return totalChars; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Кэш: %d записей, %,d символов, попаданий: %d, промахов: %d, " +
+                             "вытеснений: %d (%.1f%% попаданий)",
+                             entries.size(), totalChars, hits, misses, evictions, getHitRate() * 100);
+    }
+
+    /**
+     * Ключ: SHA-256 от операции, параметров и текста (текст - по символам UTF-16,
+     * без промежуточного массива байтов на весь текст)
+     */
+    static String key(String operation, Object[] parameters, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder header = new StringBuilder(operation);
+            for (Object parameter : parameters) {
+                String value = String.valueOf(parameter);
+                // Длина перед значением - границы параметров однозначны
+                header.append('|').append(value.length()).append(':').append(value);
+            }
+            header.append('|');
+            digest.update(header.toString().getBytes(StandardCharsets.UTF_8));
+
+            byte[] buffer = new byte[8192];
+            int filled = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                buffer[filled++] = (byte) (c >>> 8);
+                buffer[filled++] = (byte) c;
+                if (filled == buffer.length) {
+                    digest.update(buffer, 0, filled);
+                    filled = 0;
+                }
+            }
+            digest.update(buffer, 0, filled);
+
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b & 0xFF));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
@@ -1,13 +1,61 @@
 package com.saberw.core;
 
 import com.saberw.model.*;
+import com.saberw.util.CharCostModel;
+import com.saberw.util.CodeSpace;
+import com.saberw.util.CostModel;
+import com.saberw.util.ImprovedCodeGenerator;
 import com.saberw.util.SmartCodeGenerator;
 import com.saberw.util.ValidationHelper;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 public class SaberWCompressor {
     
+    // Кодирование и группировка по кускам в нескольких потоках
+    private boolean parallelEncoding = false;
+    // Модель стоимости (null - символы)
+    private CostModel costModel;
+    // Пространство кодов (null - по умолчанию)
+    private CodeSpace codeSpace;
+    
+    /**
+     * Включить параллельное кодирование (общий ForkJoinPool).
+     * Результат тот же, что при кодировании подряд
+     */
+    public void setParallelEncoding(boolean parallelEncoding) {
+        this.parallelEncoding = parallelEncoding;
+    }
+    
+    public boolean isParallelEncoding() {
+        return parallelEncoding;
+    }
+    
+    /**
+     * Считать выгоду и статистику в единицах модели (например, токенах BPE).
+     * Слова, код которых в этих единицах не дешевле самого слова, не кодируются
+     */
+    public void setCostModel(CostModel costModel) {
+        this.costModel = costModel;
+    }
+    
+    public CostModel getCostModel() {
+        return costModel;
+    }
+    
+    /**
+     * Пространство кодов, например ранжированное по токенам; самые частые
+     * слова получают первые коды
+     */
+    public void setCodeSpace(CodeSpace codeSpace) {
+        this.codeSpace = codeSpace;
+    }
+    
+    public CodeSpace getCodeSpace() {
+        return codeSpace;
+    }
+    
     public CompressionResult compress(String text) {
         return compress(text, 2, 5, 7);
     }
@@ -19,18 +67,9 @@ public class SaberWCompressor {
                 new CompressionResult.Statistics(0, 0, 0));
         }
         
-        // 1. Токенизация
-        Tokenizer tokenizer = new Tokenizer();
-        List<Token> tokens = tokenizer.tokenize(text);
-        
-        // 2. Анализ частотности слов
-        Map<String, Integer> wordFrequency = new HashMap<>();
-        for (Token token : tokens) {
-            if (token.isWord() && ValidationHelper.shouldEncodeWord(token.getValue())) {  // Используем старый метод
-                String word = token.getValue();
-                wordFrequency.put(word, wordFrequency.getOrDefault(word, 0) + 1);
-            }
-        }
+        // 1-2. Токенизация и анализ частотности слов (по кускам, параллельно)
+        Map<String, Integer> wordFrequency = new FrequencyCounter()
+            .countWords(text, ValidationHelper::shouldEncodeWord);  // Используем старый метод
         
         // 3. Создание кандидатов для слов (только слова, фразы временно убираем)
         List<Candidate> candidates = new ArrayList<>();
@@ -40,19 +79,26 @@ public class SaberWCompressor {
             }
         }
         
-        // Сортируем по приоритету (длина * частота)
-        candidates.sort((a, b) -> {
-            int scoreA = a.getText().length() * a.getFrequency();
-            int scoreB = b.getText().length() * b.getFrequency();
-            return Integer.compare(scoreB, scoreA);
-        });
+        // Сортируем по приоритету (стоимость вхождения * частота, без модели - длина)
+        CostModel model = costModel != null ? costModel : CharCostModel.INSTANCE;
+        Map<String, Integer> scores = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            scores.put(candidate.getText(),
+                model.occurrenceCost(candidate.getText()) * candidate.getFrequency());
+        }
+        candidates.sort((a, b) -> Integer.compare(scores.get(b.getText()), scores.get(a.getText())));
         
         // 4. Назначаем коды
-        SmartCodeGenerator codeGen = new SmartCodeGenerator(text);
+        SmartCodeGenerator codeGen = codeSpace != null
+            ? new SmartCodeGenerator(text, codeSpace) : new SmartCodeGenerator(text);
         Map<String, String> wordToCode = new HashMap<>();
         List<DictionaryEntry> dictionary = new ArrayList<>();
         
         for (Candidate candidate : candidates) {
+            if (costModel != null && ImprovedCodeGenerator.calculateBenefit(candidate.getText(),
+                    candidate.getFrequency(), codeGen.peekCode(), costModel) <= 0) {
+                continue;
+            }
             String code = codeGen.nextCode();
             if (code != null && codeGen.isSafeToInsert(code)) {
                 candidate.setCode(code);
@@ -65,38 +111,74 @@ public class SaberWCompressor {
         String compressedText = encodeTextSimple(text, wordToCode);
         
         // 6. Группировка последовательных кодов (без маркера!)
-        String groupedText = groupCodesWithoutMarker(compressedText, dictionary);
+        String groupedText = parallelEncoding
+            ? groupCodesParallel(compressedText, dictionary)
+            : groupCodesWithoutMarker(compressedText, dictionary);
         
         // 7. Подсчёт статистики
-        CompressionResult.Statistics stats = new CompressionResult.Statistics(
-            text.length(),
-            groupedText.length(),
-            dictionary.size()
-        );
+        CompressionResult.Statistics stats;
+        if (costModel == null) {
+            stats = new CompressionResult.Statistics(
+                text.length(),
+                groupedText.length(),
+                dictionary.size()
+            );
+        } else {
+            int compressedTokens = costModel.cost(groupedText);
+            for (DictionaryEntry entry : dictionary) {
+                compressedTokens += costModel.entryCost(entry.getWord(), entry.getCode());
+            }
+            stats = new CompressionResult.Statistics(text.length(), groupedText.length(),
+                dictionary.size(), 0, costModel.getName(), costModel.cost(text), compressedTokens);
+        }
         
         return new CompressionResult(groupedText, dictionary, stats);
     }
     
     // Простое кодирование текста
     private String encodeTextSimple(String text, Map<String, String> wordToCode) {
-        // Сортируем слова по длине (от длинных к коротким)
-        List<Map.Entry<String, String>> entries = new ArrayList<>(wordToCode.entrySet());
-        entries.sort((a, b) -> Integer.compare(b.getKey().length(), a.getKey().length()));
+        List<DictionaryEntry> entries = new ArrayList<>();
+        for (Map.Entry<String, String> entry : wordToCode.entrySet()) {
+            entries.add(new DictionaryEntry(entry.getKey(), entry.getValue(), 0));
+        }
         
-        StringBuilder result = new StringBuilder(text);
+        // Замена подстрок (без проверки границ слова) за один проход автомата
+        CompiledCodec codec = new CompiledCodec(entries, false);
+        return parallelEncoding ? codec.encodeParallel(text) : codec.encode(text);
+    }
+    
+    /**
+     * Группировка по кускам: куски режутся перед символом, который не является
+     * кодом, поэтому ни одна серия кодов (●N) не попадает на шов
+     */
+    private String groupCodesParallel(String text, List<DictionaryEntry> dictionary) {
+        int chunkSize = CompiledCodec.DEFAULT_PARALLEL_CHUNK_SIZE;
+        if (text.length() <= chunkSize) {
+            return groupCodesWithoutMarker(text, dictionary);
+        }
         
-        for (Map.Entry<String, String> entry : entries) {
-            String word = entry.getKey();
-            String code = entry.getValue();
-            
-            int index = 0;
-            while ((index = result.indexOf(word, index)) != -1) {
-                result.replace(index, index + word.length(), code);
-                index += code.length();
+        Set<Character> codeChars = new HashSet<>();
+        for (DictionaryEntry entry : dictionary) {
+            String code = entry.getCode();
+            if (code != null && code.length() == 1) {
+                codeChars.add(code.charAt(0));
             }
         }
         
-        return result.toString();
+        List<String> chunks = new ArrayList<>();
+        int from = 0;
+        while (from < text.length()) {
+            int to = Math.min(text.length(), from + chunkSize);
+            while (to < text.length() && codeChars.contains(text.charAt(to))) {
+                to++;
+            }
+            chunks.add(text.substring(from, to));
+            from = to;
+        }
+        
+        return chunks.parallelStream()
+            .map(chunk -> groupCodesWithoutMarker(chunk, dictionary))
+            .collect(Collectors.joining());
     }
     
     // Группировка кодов без маркера
@@ -1,18 +1,41 @@
 package com.saberw.core;
 
 import com.saberw.model.*;
+import com.saberw.util.CharCostModel;
+import com.saberw.util.CodeSpace;
+import com.saberw.util.CostModel;
 import com.saberw.util.ImprovedCodeGenerator;
 import com.saberw.util.ValidationHelper;
 
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.*;
 
 public class SaberWCore {
     
-    private final ImprovedCodeGenerator codeGenerator;
+    private ImprovedCodeGenerator codeGenerator;
     private final boolean normalizeToLowercase;
     private final boolean aggressiveCompression;
     private final String originalText;
     
+    /**
+     * Стратегия разбора текста на записи словаря
+     */
+    public enum EncodingStrategy {
+        GREEDY,   // самая длинная запись в каждой позиции, слева направо
+        OPTIMAL   // кратчайший результат (динамическое программирование по токенам)
+    }
+    
+    // Кодирование по токенам (true) или прежним поиском строк в тексте (false)
+    private boolean tokenEncoding = true;
+    private EncodingStrategy encodingStrategy = EncodingStrategy.GREEDY;
+    private boolean parallelEncoding = false;
+    private ResultCache resultCache;
+    private CostModel costModel;
+    private CodeSpace codeSpace;
+    
     // Конфигурация по умолчанию
     private static final int MIN_WORD_LENGTH = 3;
     private static final int MIN_FREQUENCY = 2;
@@ -39,6 +62,87 @@ public class SaberWCore {
         this.codeGenerator = new ImprovedCodeGenerator(processedText);
     }
     
+    /**
+     * Переключить этап кодирования: по токенам или поиском слов в тексте
+     * (старый путь оставлен для сравнения результатов на корпусе)
+     */
+    public void setTokenEncoding(boolean tokenEncoding) {
+        this.tokenEncoding = tokenEncoding;
+    }
+    
+    public boolean isTokenEncoding() {
+        return tokenEncoding;
+    }
+    
+    /**
+     * Выбрать стратегию разбора. OPTIMAL всегда работает по токенам,
+     * а в статистике показывает выигрыш относительно жадного разбора
+     */
+    public void setEncodingStrategy(EncodingStrategy encodingStrategy) {
+        this.encodingStrategy = encodingStrategy;
+    }
+    
+    public EncodingStrategy getEncodingStrategy() {
+        return encodingStrategy;
+    }
+    
+    /**
+     * Кодировать текст по кускам в нескольких потоках (общий ForkJoinPool).
+     * Результат тот же, что при кодировании подряд; OPTIMAL всегда идёт подряд
+     */
+    public void setParallelEncoding(boolean parallelEncoding) {
+        this.parallelEncoding = parallelEncoding;
+    }
+    
+    public boolean isParallelEncoding() {
+        return parallelEncoding;
+    }
+    
+    /**
+     * Кэш результатов: повторное сжатие того же текста с теми же параметрами
+     * и повторная распаковка берутся из него (null - без кэша)
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+    
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+    
+    /**
+     * Модель стоимости для отбора слов и статистики (например, BpeCostModel -
+     * экономить токены языковой модели, а не символы). null - символы, как раньше;
+     * с моделью в статистике появляется оценка в токенах
+     */
+    public void setCostModel(CostModel costModel) {
+        this.costModel = costModel;
+    }
+    
+    public CostModel getCostModel() {
+        return costModel;
+    }
+    
+    /**
+     * Пространство кодов, например ранжированное по токенам
+     * (CodeSpace.DEFAULT.ranked(модель, файл кэша)); коды выдаются по порядку,
+     * а записи словаря идут по убыванию выгоды, поэтому самым выгодным
+     * достаются самые дешёвые коды. null - пространство по умолчанию
+     */
+    public void setCodeSpace(CodeSpace codeSpace) {
+        this.codeSpace = codeSpace;
+        this.codeGenerator = new ImprovedCodeGenerator(getTextToProcess(),
+            codeSpace != null ? codeSpace : CodeSpace.DEFAULT);
+    }
+    
+    public CodeSpace getCodeSpace() {
+        return codeSpace;
+    }
+    
+    private CostModel costModel() {
+        return costModel != null ? costModel : CharCostModel.INSTANCE;
+    }
+    
     /**
      * Основной метод сжатия с улучшенной логикой
      */
@@ -51,7 +155,25 @@ public class SaberWCore {
                                      int minFrequencyFor2Chars, int maxPhraseTokens,
                                      int minPhraseLength) {
         String textToProcess = getTextToProcess();
+        if (resultCache == null) {
+            return compress(textToProcess, minWordLength, minFrequency, minFrequencyFor2Chars,
+                           maxPhraseTokens, minPhraseLength);
+        }
         
+        // В ключ входит всё, от чего зависит результат (параллельность - не зависит)
+        Object[] parameters = {minWordLength, minFrequency, minFrequencyFor2Chars,
+                               maxPhraseTokens, minPhraseLength, normalizeToLowercase,
+                               aggressiveCompression, tokenEncoding, encodingStrategy,
+                               costModel().getFingerprint(),
+                               codeSpace == null ? null : codeSpace.getFingerprint()};
+        return resultCache.compress(textToProcess, parameters,
+            () -> compress(textToProcess, minWordLength, minFrequency, minFrequencyFor2Chars,
+                           maxPhraseTokens, minPhraseLength));
+    }
+    
+    private CompressionResult compress(String textToProcess, int minWordLength, int minFrequency,
+                                      int minFrequencyFor2Chars, int maxPhraseTokens,
+                                      int minPhraseLength) {
         if (textToProcess == null || textToProcess.isEmpty()) {
             return new CompressionResult("", Collections.emptyList(),
                 new CompressionResult.Statistics(0, 0, 0));
@@ -59,15 +181,22 @@ public class SaberWCore {
         
         // 1. Токенизация
         Tokenizer tokenizer = new Tokenizer();
-        List<Token> tokens = tokenizer.tokenize(textToProcess);
+        TokenTable tokens = tokenizer.tokenizeTable(textToProcess);
         
         // 2. Анализ частотности с улучшенной логикой
         Map<String, Integer> wordFrequency = analyzeWordFrequency(tokens);
         
         // 3. Отбор кандидатов с учетом пользы
-        List<Candidate> candidates = selectCandidates(wordFrequency, 
-                                                     minWordLength, minFrequency,
-                                                     minFrequencyFor2Chars);
+        List<Candidate> wordCandidates = selectCandidates(wordFrequency, 
+                                                         minWordLength, minFrequency,
+                                                         minFrequencyFor2Chars);
+        
+        // 3.1. Фразы из нескольких слов и совместный отбор с учётом пересечений
+        List<Candidate> phraseCandidates = selectPhraseCandidates(tokenizer, tokens,
+            maxPhraseTokens, minFrequency, minPhraseLength);
+        List<Candidate> candidates = new CandidateSelector(costModel(),
+            codeSpace != null ? codeSpace : CodeSpace.DEFAULT).select(
+            textToProcess, wordCandidates, phraseCandidates, minFrequency);
         
         // 4. Назначение кодов
         assignCodes(candidates);
@@ -75,8 +204,17 @@ public class SaberWCore {
         // 5. Создание словаря
         List<DictionaryEntry> dictionary = createDictionary(candidates);
         
-        // 6. Кодирование текста
-        String encodedText = encodeText(textToProcess, dictionary);
+        // 6. Кодирование текста (словарь компилируется один раз для всех проходов)
+        CompiledCodec codec = new CompiledCodec(dictionary);
+        String encodedText = tokenEncoding
+            ? (parallelEncoding ? codec.encodeParallel(textToProcess) : codec.encode(textToProcess))
+            : encodeText(textToProcess, dictionary);
+        int savedVsGreedy = 0;
+        if (encodingStrategy == EncodingStrategy.OPTIMAL) {
+            String optimalText = codec.encodeOptimal(textToProcess);
+            savedVsGreedy = encodedText.length() - optimalText.length();
+            encodedText = optimalText;
+        }
         
         // 7. Групповое кодирование (если выгодно)
         String finalText = applyGroupCoding(encodedText, dictionary);
@@ -88,7 +226,7 @@ public class SaberWCore {
         
         // 9. Статистика
         CompressionResult.Statistics stats = calculateStatistics(
-            textToProcess, finalText, dictionary);
+            textToProcess, finalText, dictionary, savedVsGreedy);
         
         return new CompressionResult(finalText, dictionary, stats);
     }
@@ -101,17 +239,9 @@ public class SaberWCore {
         return text;
     }
     
-    private Map<String, Integer> analyzeWordFrequency(List<Token> tokens) {
-        Map<String, Integer> frequency = new HashMap<>();
-        
-        for (Token token : tokens) {
-            if (token.isWord() && ValidationHelper.isAlphanumericWord(token.getValue())) {
-                String word = token.getValue();
-                frequency.put(word, frequency.getOrDefault(word, 0) + 1);
-            }
-        }
-        
-        return frequency;
+    private Map<String, Integer> analyzeWordFrequency(TokenTable tokens) {
+        // Таблица уже есть; большие тексты считаются по диапазонам токенов параллельно
+        return new FrequencyCounter().countWords(tokens, ValidationHelper::isAlphanumericWord);
     }
     
     private List<Candidate> selectCandidates(Map<String, Integer> wordFrequency,
@@ -133,15 +263,37 @@ public class SaberWCore {
         // Сортируем по потенциальной выгоде (частота * длина)
         candidates.sort((a, b) -> {
             int benefitA = ImprovedCodeGenerator.calculateBenefit(a.getText(), 
-                a.getFrequency(), "?"); // код пока неизвестен
+                a.getFrequency(), "?", costModel()); // код пока неизвестен
             int benefitB = ImprovedCodeGenerator.calculateBenefit(b.getText(), 
-                b.getFrequency(), "?");
+                b.getFrequency(), "?", costModel());
             return Integer.compare(benefitB, benefitA);
         });
         
         return candidates;
     }
     
+    private List<Candidate> selectPhraseCandidates(Tokenizer tokenizer, TokenTable tokens,
+                                                  int maxPhraseTokens, int minFrequency,
+                                                  int minPhraseLength) {
+        List<Candidate> phrases = new ArrayList<>();
+        if (maxPhraseTokens < 2) {
+            return phrases;
+        }
+        
+        for (Candidate candidate : tokenizer.findPhraseCandidates(tokens, maxPhraseTokens,
+                                                                  minFrequency, minPhraseLength)) {
+            String phrase = candidate.getText();
+            // Фраза начинается и заканчивается словом и не переносит строку
+            // (словарь хранится построчно в виде "код=фраза")
+            if (Tokenizer.isWordAt(phrase, 0, phrase.length())
+                    && Tokenizer.isWordAt(phrase, phrase.length() - 1, phrase.length())
+                    && phrase.indexOf('\n') < 0 && phrase.indexOf('\r') < 0) {
+                phrases.add(candidate);
+            }
+        }
+        return phrases;
+    }
+    
     private void assignCodes(List<Candidate> candidates) {
         for (Candidate candidate : candidates) {
             try {
@@ -160,6 +312,12 @@ public class SaberWCore {
         
         // Удаляем кандидаты без кодов
         candidates.removeIf(c -> c.getCode() == null);
+        
+        // В токенах код может стоить больше слова (двухсимвольный код, редкий иероглиф)
+        if (costModel != null) {
+            candidates.removeIf(c -> ImprovedCodeGenerator.calculateBenefit(
+                c.getText(), c.getFrequency(), c.getCode(), costModel) <= 0);
+        }
     }
     
     private List<DictionaryEntry> createDictionary(List<Candidate> candidates) {
@@ -177,42 +335,9 @@ public class SaberWCore {
     }
     
     private String encodeText(String text, List<DictionaryEntry> dictionary) {
-        // Сортируем слова по длине (от длинных к коротким)
-        List<DictionaryEntry> sortedDict = new ArrayList<>(dictionary);
-        sortedDict.sort((a, b) -> Integer.compare(b.getWord().length(), 
-                                                 a.getWord().length()));
-        
-        StringBuilder result = new StringBuilder(text);
-        
-        for (DictionaryEntry entry : sortedDict) {
-            String word = entry.getWord();
-            String code = entry.getCode();
-            
-            int index = 0;
-            while ((index = result.indexOf(word, index)) != -1) {
-                // Проверяем границы слова
-                if (isWholeWord(result, index, word.length())) {
-                    result.replace(index, index + word.length(), code);
-                    index += code.length();
-                } else {
-                    index += 1;
-                }
-            }
-        }
-        
-        return result.toString();
-    }
-    
-    private boolean isWholeWord(StringBuilder text, int start, int length) {
-        // Проверяем, что слева и справа от слова не буквы/цифры
-        if (start > 0 && Character.isLetterOrDigit(text.charAt(start - 1))) {
-            return false;
-        }
-        if (start + length < text.length() && 
-            Character.isLetterOrDigit(text.charAt(start + length))) {
-            return false;
-        }
-        return true;
+        // Все слова ищутся за один проход автомата (от длинных к коротким, только целые слова)
+        DictionaryMatcher matcher = new DictionaryMatcher(dictionary, true);
+        return matcher.encode(text);
     }
     
     private String applyGroupCoding(String text, List<DictionaryEntry> dictionary) {
@@ -222,7 +347,8 @@ public class SaberWCore {
 }
     
     private CompressionResult.Statistics calculateStatistics(
-            String original, String compressed, List<DictionaryEntry> dictionary) {
+            String original, String compressed, List<DictionaryEntry> dictionary,
+            int savedVsGreedy) {
         
         int originalLength = original.length();
         int compressedLength = compressed.length();
@@ -234,8 +360,18 @@ public class SaberWCore {
             dictSize += entry.getCode().length() + entry.getWord().length() + 3; // "= \n"
         }
         
+        if (costModel == null) {
+            return new CompressionResult.Statistics(
+                originalLength, compressedLength + dictSize, dictEntries, savedVsGreedy);
+        }
+        
+        int dictTokens = 0;
+        for (DictionaryEntry entry : dictionary) {
+            dictTokens += costModel.entryCost(entry.getWord(), entry.getCode());
+        }
         return new CompressionResult.Statistics(
-            originalLength, compressedLength + dictSize, dictEntries);
+            originalLength, compressedLength + dictSize, dictEntries, savedVsGreedy,
+            costModel.getName(), costModel.cost(original), costModel.cost(compressed) + dictTokens);
     }
     
     /**
@@ -245,7 +381,31 @@ public class SaberWCore {
         if (compressedText == null || dictionary == null) {
             return compressedText;
         }
-        
+        if (resultCache != null) {
+            // Попадание в кэш не требует даже компиляции словаря
+            String text = compressedText;
+            return resultCache.decompress(text, dictionary,
+                () -> decompressUncached(text, new CompiledCodec(dictionary)));
+        }
+        return decompressUncached(compressedText, new CompiledCodec(dictionary));
+    }
+    
+    /**
+     * Декомпрессия готовым скомпилированным словарём (без подготовки на каждый вызов)
+     */
+    public String decompress(String compressedText, CompiledCodec codec) {
+        if (compressedText == null) {
+            return null;
+        }
+        if (resultCache != null) {
+            String text = compressedText;
+            return resultCache.decompress(text, codec.getDictionary(),
+                () -> decompressUncached(text, codec));
+        }
+        return decompressUncached(compressedText, codec);
+    }
+    
+    private String decompressUncached(String compressedText, CompiledCodec codec) {
         // Проверяем маркер нижнего регистра
         boolean wasLowercased = false;
         if (compressedText.length() > 0 && 
@@ -254,52 +414,8 @@ public class SaberWCore {
             compressedText = compressedText.substring(1);
         }
         
-        // Создаем карты для декодирования
-        Map<String, String> codeToWord = new HashMap<>();
-        Set<Character> singleCharCodes = new HashSet<>();
-        
-        for (DictionaryEntry entry : dictionary) {
-            codeToWord.put(entry.getCode(), entry.getWord());
-            if (entry.getCode().length() == 1) {
-                singleCharCodes.add(entry.getCode().charAt(0));
-            }
-        }
-        
-        StringBuilder result = new StringBuilder();
-        int i = 0;
-        
-        while (i < compressedText.length()) {
-            char current = compressedText.charAt(i);
-            
-           
-            
-            // Одиночные коды (1 символ)
-            if (singleCharCodes.contains(current)) {
-                String code = String.valueOf(current);
-                if (codeToWord.containsKey(code)) {
-                    result.append(codeToWord.get(code));
-                } else {
-                    result.append(current);
-                }
-                i++;
-            } 
-            // Двухсимвольные коды
-            else if (i + 1 < compressedText.length()) {
-                String potentialCode = compressedText.substring(i, i + 2);
-                if (codeToWord.containsKey(potentialCode)) {
-                    result.append(codeToWord.get(potentialCode));
-                    i += 2;
-                } else {
-                    result.append(current);
-                    i++;
-                }
-            } else {
-                result.append(current);
-                i++;
-            }
-        }
-        
-        String finalText = result.toString();
+        // Словарь компилируется в таблицы кодов, текст декодируется за один проход
+        String finalText = codec.decode(compressedText);
         
         // Если текст был приведен к нижнему регистру, восстанавливаем регистр
         // (упрощенная версия - просто возвращаем как есть)
@@ -310,4 +426,24 @@ public class SaberWCore {
         
         return finalText;
     }
+    
+    /**
+     * Потоковая декомпрессия: из Reader в Writer без загрузки текста целиком
+     */
+    public void decompress(Reader input, Writer output, 
+                           List<DictionaryEntry> dictionary) throws IOException {
+        decompress(input, output, new CompiledCodec(dictionary));
+    }
+    
+    public void decompress(Reader input, Writer output, 
+                           CompiledCodec codec) throws IOException {
+        // Маркер нижнего регистра в начале потока пропускаем
+        PushbackReader reader = new PushbackReader(input, 1);
+        int first = reader.read();
+        if (first >= 0 && first != ImprovedCodeGenerator.LOWER_CASE_MARKER) {
+            reader.unread(first);
+        }
+        
+        codec.decode(reader, output);
+    }
 }
\ No newline at end of file
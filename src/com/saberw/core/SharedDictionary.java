@@ -0,0 +1,368 @@
+package com.saberw.core;
+
+import com.saberw.model.*;
+import com.saberw.util.ImprovedCodeGenerator;
+import com.saberw.util.ValidationHelper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Общий словарь, обученный на корпусе примеров и используемый многими сообщениями.
+ * Сообщение несёт только идентификатор словаря и свои дополнительные записи:
+ *
+ *   SW:<id>:<n>\n
+ *   <код>=<слово>\n   (n строк дополнений)
+ *   <сжатый текст>
+ *
+ * Если в сообщении встречаются символы кодов общего словаря, оно сжимается
+ * только своими дополнениями, а идентификатор остаётся пустым.
+ *
+ * Словарь из двоичного файла (load) работает прямо по отображённому буферу:
+ * записи не разбираются, а CompiledCodec строится только для сообщений
+ * с дополнениями.
+ */
+public class SharedDictionary {
+
+    private static final String MESSAGE_PREFIX = "SW:";
+    private static final String SAMPLE_SEPARATOR = "\n\n";
+
+    private final String id;
+    // Отображённый двоичный словарь (null - словарь из списка записей)
+    private final BinaryDictionary binary;
+    private final BitSet codeChars;
+
+    // Для двоичного словаря - создаются при первом обращении
+    private List<DictionaryEntry> entries;
+    private CompiledCodec codec;
+    private Set<String> words;
+    private Set<String> codes;
+
+    public SharedDictionary(List<DictionaryEntry> entries) {
+        this.binary = null;
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        this.id = computeId(this.entries);
+        this.codec = new CompiledCodec(this.entries);
+
+        this.words = new HashSet<>();
+        this.codes = new HashSet<>();
+        this.codeChars = new BitSet(65536);
+        for (DictionaryEntry entry : this.entries) {
+            words.add(entry.getWord());
+            codes.add(entry.getCode());
+            for (int i = 0; i < entry.getCode().length(); i++) {
+                codeChars.set(entry.getCode().charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Словарь поверх отображённого файла: идентификатор берётся из заголовка,
+     * из записей читаются только символы кодов, объекты записей не создаются
+     */
+    public SharedDictionary(BinaryDictionary binary) {
+        this.binary = binary;
+        this.id = binary.getDictionaryId() != 0
+            ? String.format("%08x", binary.getDictionaryId()) : computeId(binary);
+        this.codeChars = new BitSet(65536);
+        binary.collectCodeChars(codeChars);
+    }
+
+    public String getId() { return id; }
+
+    public synchronized List<DictionaryEntry> getEntries() {
+        if (entries == null) {
+            entries = Collections.unmodifiableList(binary.toEntries());
+        }
+        return entries;
+    }
+
+    public synchronized CompiledCodec getCodec() {
+        if (codec == null) {
+            codec = new CompiledCodec(getEntries());
+        }
+        return codec;
+    }
+
+    public int size() {
+        return binary != null ? binary.size() : entries.size();
+    }
+
+    // === Обучение ===
+
+    /**
+     * Обучить словарь на всех файлах каталога (UTF-8, без подкаталогов)
+     */
+    public static SharedDictionary train(Path directory) throws IOException {
+        List<String> samples = new ArrayList<>();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            samples.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+        return train(samples);
+    }
+
+    /**
+     * Обучить словарь на примерах: обычный отбор SaberWCore (слова и фразы
+     * по выгоде) по всему корпусу сразу, коды безопасны для символов корпуса
+     */
+    public static SharedDictionary train(List<String> samples) {
+        String corpus = String.join(SAMPLE_SEPARATOR, samples);
+        CompressionResult result = new SaberWCore(corpus).compress();
+        return new SharedDictionary(result.getDictionary());
+    }
+
+    // === Хранение ===
+
+    public void save(Path file) throws IOException {
+        String text = new DictionaryBuilder().formatDictionary(getEntries());
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Сохранить в двоичном формате (BinaryDictionary) - для быстрой загрузки
+     */
+    public void saveBinary(Path file) throws IOException {
+        BinaryDictionary.write(getEntries(), file);
+    }
+
+    /**
+     * Загрузить словарь: двоичный формат определяется по сигнатуре, иначе - текстовый
+     */
+    public static SharedDictionary load(Path file) throws IOException {
+        if (BinaryDictionary.isBinaryDictionary(file)) {
+            return new SharedDictionary(BinaryDictionary.map(file));
+        }
+
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        return new SharedDictionary(new DictionaryBuilder().parseDictionary(text));
+    }
+
+    // === Сообщения ===
+
+    /**
+     * Сжать сообщение общим словарём и дополнениями для слов, которых в нём нет
+     */
+    public CompressionResult compress(String message) {
+        // Если в сообщении есть символ-код общего словаря, словарь не используется
+        // целиком (едут только дополнения). Пространство кодов начинается с редких
+        // блоков; Хангыль и основные иероглифы - в его конце, до них доходят
+        // только словари больше ~68 тыс. записей (см. CodeSpace.DEFAULT_BLOCKS)
+        boolean useShared = !containsCodeChars(message);
+
+        List<DictionaryEntry> additions = buildAdditions(message, useShared);
+        StringBuilder result = new StringBuilder();
+        result.append(MESSAGE_PREFIX).append(useShared ? id : "")
+              .append(':').append(additions.size()).append('\n');
+        for (DictionaryEntry entry : additions) {
+            result.append(entry.getCode()).append('=').append(entry.getWord()).append('\n');
+        }
+
+        if (useShared && additions.isEmpty()) {
+            // Только общий словарь: двоичный кодирует прямо по буферу
+            result.append(binary != null ? binary.encode(message) : codec.encode(message));
+        } else {
+            List<DictionaryEntry> combined = new ArrayList<>(useShared ? getEntries() : List.of());
+            combined.addAll(additions);
+            result.append(new CompiledCodec(combined).encode(message));
+        }
+
+        String compressed = result.toString();
+        return new CompressionResult(compressed, additions,
+            new CompressionResult.Statistics(message.length(), compressed.length(),
+                                             additions.size()));
+    }
+
+    /**
+     * Распаковать сообщение, сжатое этим словарём (или только дополнениями)
+     */
+    public String decompress(String compressed) {
+        String messageId = readDictionaryId(compressed);
+        if (!messageId.isEmpty() && !messageId.equals(id)) {
+            throw new IllegalArgumentException("Сообщение сжато другим словарём: " + messageId);
+        }
+
+        int lineEnd = compressed.indexOf('\n');
+        if (lineEnd < 0) {
+            throw new IllegalArgumentException("Повреждён заголовок сообщения");
+        }
+        int count;
+        try {
+            count = Integer.parseInt(compressed.substring(
+                MESSAGE_PREFIX.length() + messageId.length() + 1, lineEnd));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Повреждён заголовок сообщения");
+        }
+        int position = lineEnd + 1;
+        // Каждое дополнение - строка "код=слово\n" не короче трёх символов:
+        // число из заголовка не может быть больше оставшейся длины
+        if (count < 0 || count > (compressed.length() - position) / 3) {
+            throw new IllegalArgumentException("Повреждён заголовок сообщения");
+        }
+
+        List<DictionaryEntry> additions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int end = compressed.indexOf('\n', position);
+            if (end < 0) {
+                throw new IllegalArgumentException("Повреждён заголовок сообщения");
+            }
+            String line = compressed.substring(position, end);
+            int separator = line.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Повреждён заголовок сообщения");
+            }
+            additions.add(new DictionaryEntry(line.substring(separator + 1),
+                                              line.substring(0, separator), 0));
+            position = end + 1;
+        }
+
+        String body = compressed.substring(position);
+        if (!messageId.isEmpty() && additions.isEmpty()) {
+            return binary != null ? binary.decode(body) : codec.decode(body);
+        }
+        List<DictionaryEntry> combined = new ArrayList<>(messageId.isEmpty() ? List.of() : getEntries());
+        combined.addAll(additions);
+        return new CompiledCodec(combined).decode(body);
+    }
+
+    /**
+     * Идентификатор словаря из заголовка сообщения (пустой - без общего словаря)
+     */
+    public static String readDictionaryId(String compressed) {
+        if (compressed == null || !compressed.startsWith(MESSAGE_PREFIX)) {
+            throw new IllegalArgumentException("Это не сообщение с общим словарём");
+        }
+        int end = compressed.indexOf(':', MESSAGE_PREFIX.length());
+        if (end < 0) {
+            throw new IllegalArgumentException("Повреждён заголовок сообщения");
+        }
+        return compressed.substring(MESSAGE_PREFIX.length(), end);
+    }
+
+    private boolean containsCodeChars(String message) {
+        for (int i = 0; i < message.length(); i++) {
+            if (codeChars.get(message.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Дополнения: частые слова сообщения, которых нет в общем словаре.
+     * Они едут вместе с сообщением, поэтому берутся только с положительной выгодой
+     */
+    private List<DictionaryEntry> buildAdditions(String message, boolean useShared) {
+        Map<String, Integer> frequency = new HashMap<>();
+        int length = message.length();
+        int start = 0;
+        while (start < length) {
+            int end = Tokenizer.tokenEnd(message, start, length);
+            if (Tokenizer.isWordAt(message, start, length)) {
+                String word = message.substring(start, end);
+                if (ValidationHelper.isAlphanumericWord(word)
+                        && !(useShared && containsWord(word))) {
+                    frequency.merge(word, 1, Integer::sum);
+                }
+            }
+            start = end;
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : frequency.entrySet()) {
+            String word = entry.getKey();
+            int freq = entry.getValue();
+            if (ValidationHelper.shouldEncodeWord(word) && freq >= 2
+                    && ImprovedCodeGenerator.calculateBenefit(word, freq, "?") > 0) {
+                candidates.add(new Candidate(word, freq));
+            }
+        }
+        candidates.sort((a, b) -> Integer.compare(
+            ImprovedCodeGenerator.calculateBenefit(b.getText(), b.getFrequency(), "?"),
+            ImprovedCodeGenerator.calculateBenefit(a.getText(), a.getFrequency(), "?")));
+
+        List<DictionaryEntry> additions = new ArrayList<>();
+        if (candidates.isEmpty()) {
+            return additions;
+        }
+
+        // Коды дополнений не пересекаются с кодами общего словаря
+        ImprovedCodeGenerator codeGenerator = new ImprovedCodeGenerator(message);
+        for (Candidate candidate : candidates) {
+            try {
+                String code = codeGenerator.nextCode();
+                while (useShared && containsCode(code)) {
+                    code = codeGenerator.nextCode();
+                }
+                if (codeGenerator.isCodeSafe(code)
+                        && ImprovedCodeGenerator.calculateBenefit(candidate.getText(),
+                               candidate.getFrequency(), code) > 0) {
+                    additions.add(new DictionaryEntry(candidate.getText(), code,
+                                                      candidate.getFrequency()));
+                }
+            } catch (IllegalStateException e) {
+                break;
+            }
+        }
+        return additions;
+    }
+
+    private boolean containsWord(String word) {
+        return binary != null ? binary.findCode(word, 0, word.length()) != null : words.contains(word);
+    }
+
+    private boolean containsCode(String code) {
+        return binary != null ? binary.findWord(code, 0, code.length()) != null : codes.contains(code);
+    }
+
+    private static String computeId(List<DictionaryEntry> entries) {
+        return String.format("%08x", idHash(entries));
+    }
+
+    /**
+     * Идентификатор как число: первые 4 байта SHA-256 строк "код=слово\n"
+     * (BinaryDictionary хранит его в заголовке)
+     */
+    static int idHash(List<DictionaryEntry> entries) {
+        MessageDigest digest = newDigest();
+        for (DictionaryEntry entry : entries) {
+            digest.update((entry.getCode() + "=" + entry.getWord() + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        }
+        return ByteBuffer.wrap(digest.digest()).getInt();
+    }
+
+    // Для файлов без идентификатора в заголовке - строки берутся прямо из пула
+    private static String computeId(BinaryDictionary binary) {
+        MessageDigest digest = newDigest();
+        ByteBuffer separator = ByteBuffer.wrap(new byte[] {'='});
+        ByteBuffer newline = ByteBuffer.wrap(new byte[] {'\n'});
+        for (int i = 0; i < binary.size(); i++) {
+            digest.update(StandardCharsets.UTF_8.encode(binary.codeChars(i)));
+            digest.update(separator.rewind());
+            digest.update(StandardCharsets.UTF_8.encode(binary.wordChars(i)));
+            digest.update(newline.rewind());
+        }
+        return String.format("%08x", ByteBuffer.wrap(digest.digest()).getInt());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+package com.saberw.core;
+
+import com.saberw.model.*;
+import com.saberw.util.ImprovedCodeGenerator;
+import com.saberw.util.ValidationHelper;
+
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Потоковое сжатие в два прохода для текстов, которые не помещаются в память.
+ * Проход 1 читает Reader кусками и считает частоты слов и набор символов,
+ * проход 2 кодирует второй Reader прямо в Writer. Память ограничена
+ * размером куска и числом отслеживаемых слов, а не размером входа.
+ * Кодируются только отдельные слова (фразы требуют окна по всему тексту).
+ */
+public class StreamingCompressor {
+
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_TRACKED_WORDS = 1_000_000;
+
+    // Конфигурация по умолчанию - как в SaberWCore
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int MIN_FREQUENCY = 2;
+    private static final int MIN_FREQUENCY_FOR_2CHARS = 6;
+
+    private final int chunkSize;
+    private final int maxTrackedWords;
+
+    /**
+     * Обработчик токенов куска: символы [start, end) буфера
+     */
+    private interface TokenVisitor {
+        void visit(char[] buffer, int start, int end, boolean word) throws IOException;
+    }
+
+    public StreamingCompressor() {
+        this(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_TRACKED_WORDS);
+    }
+
+    /**
+     * @param chunkSize       размер куска чтения в символах
+     * @param maxTrackedWords сколько разных слов держать в таблице частот;
+     *                        при переполнении редкие слова отбрасываются
+     */
+    public StreamingCompressor(int chunkSize, int maxTrackedWords) {
+        if (chunkSize < 16) {
+            throw new IllegalArgumentException("Размер куска слишком мал: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.maxTrackedWords = maxTrackedWords;
+    }
+
+    /**
+     * Сжать файл: оба прохода, результат и словарь - в отдельные файлы (UTF-8)
+     */
+    public CompressionResult.Statistics compress(Path input, Path output,
+                                                 Path dictionaryFile) throws IOException {
+        List<DictionaryEntry> dictionary;
+        try (Reader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            dictionary = buildDictionary(reader);
+        }
+
+        CompressionResult.Statistics stats;
+        try (Reader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            stats = encode(reader, writer, dictionary);
+        }
+
+        Files.write(dictionaryFile, new DictionaryBuilder().formatDictionary(dictionary)
+            .getBytes(StandardCharsets.UTF_8));
+        return stats;
+    }
+
+    public List<DictionaryEntry> buildDictionary(Reader input) throws IOException {
+        return buildDictionary(input, MIN_WORD_LENGTH, MIN_FREQUENCY, MIN_FREQUENCY_FOR_2CHARS);
+    }
+
+    /**
+     * Проход 1: частоты слов и символы текста, затем отбор и назначение кодов
+     */
+    public List<DictionaryEntry> buildDictionary(Reader input, int minWordLength,
+                                                 int minFrequency,
+                                                 int minFrequencyFor2Chars) throws IOException {
+        Map<String, Integer> frequency = new HashMap<>();
+        BitSet textChars = new BitSet(65536);
+        int[] pruneThreshold = {1};
+
+        scanTokens(input, (buffer, start, end, word) -> {
+            for (int i = start; i < end; i++) {
+                textChars.set(buffer[i]);
+            }
+            if (!word) {
+                return;
+            }
+            String value = new String(buffer, start, end - start);
+            if (ValidationHelper.isAlphanumericWord(value)) {
+                frequency.merge(value, 1, Integer::sum);
+                if (frequency.size() > maxTrackedWords) {
+                    pruneThreshold[0] = prune(frequency, pruneThreshold[0]);
+                }
+            }
+        });
+
+        // Отбор кандидатов - так же, как в SaberWCore
+        List<Candidate> candidates = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : frequency.entrySet()) {
+            if (ValidationHelper.shouldEncodeWord(entry.getKey(), entry.getValue(),
+                    minWordLength, minFrequency, minFrequencyFor2Chars)) {
+                candidates.add(new Candidate(entry.getKey(), entry.getValue()));
+            }
+        }
+        candidates.sort((a, b) -> Integer.compare(
+            ImprovedCodeGenerator.calculateBenefit(b.getText(), b.getFrequency(), "?"),
+            ImprovedCodeGenerator.calculateBenefit(a.getText(), a.getFrequency(), "?")));
+
+        Set<Character> characters = new HashSet<>();
+        for (int c = textChars.nextSetBit(0); c >= 0; c = textChars.nextSetBit(c + 1)) {
+            characters.add((char) c);
+        }
+        ImprovedCodeGenerator codeGenerator = new ImprovedCodeGenerator(characters);
+
+        List<DictionaryEntry> dictionary = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            try {
+                String code = codeGenerator.nextCode();
+                if (codeGenerator.isCodeSafe(code)) {
+                    dictionary.add(new DictionaryEntry(candidate.getText(), code,
+                                                       candidate.getFrequency()));
+                }
+            } catch (IllegalStateException e) {
+                System.err.println("Не удалось назначить код для: " +
+                                 candidate.getText() + " - " + e.getMessage());
+                break;
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Проход 2: закодировать поток в Writer по готовому словарю
+     */
+    public CompressionResult.Statistics encode(Reader input, Writer output,
+                                               List<DictionaryEntry> dictionary) throws IOException {
+        Map<String, String> wordToCode = new HashMap<>();
+        for (DictionaryEntry entry : dictionary) {
+            wordToCode.putIfAbsent(entry.getWord(), entry.getCode());
+        }
+
+        long[] lengths = new long[2]; // исходная и сжатая длина
+        scanTokens(input, (buffer, start, end, word) -> {
+            lengths[0] += end - start;
+            String code = word ? wordToCode.get(new String(buffer, start, end - start)) : null;
+            if (code != null) {
+                output.write(code);
+                lengths[1] += code.length();
+            } else {
+                output.write(buffer, start, end - start);
+                lengths[1] += end - start;
+            }
+        });
+        output.flush();
+
+        int dictSize = 0;
+        for (DictionaryEntry entry : dictionary) {
+            dictSize += entry.getCode().length() + entry.getWord().length() + 3; // "= \n"
+        }
+        return new CompressionResult.Statistics(
+            (int) Math.min(Integer.MAX_VALUE, lengths[0]),
+            (int) Math.min(Integer.MAX_VALUE, lengths[1] + dictSize),
+            dictionary.size());
+    }
+
+    /**
+     * Разбор потока на токены кусками. Последний токен куска может
+     * продолжаться в следующем, поэтому он переносится в начало буфера
+     * и разбирается вместе со следующим куском
+     */
+    private void scanTokens(Reader input, TokenVisitor visitor) throws IOException {
+        char[] buffer = new char[chunkSize];
+        int length = 0;
+        boolean eof = false;
+
+        while (!eof) {
+            int read = input.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                eof = true;
+            } else {
+                length += read;
+                if (length < buffer.length) {
+                    continue;
+                }
+            }
+
+            // Старшая половина суррогатной пары на краю куска ждёт младшую
+            int limit = length;
+            if (!eof && Character.isHighSurrogate(buffer[length - 1])) {
+                limit--;
+            }
+
+            CharBuffer chunk = CharBuffer.wrap(buffer, 0, length);
+            int start = 0;
+            while (start < limit) {
+                int end = Tokenizer.tokenEnd(chunk, start, limit);
+                if (end == limit && !eof) {
+                    break;
+                }
+                visitor.visit(buffer, start, end, Tokenizer.isWordAt(chunk, start, limit));
+                start = end;
+            }
+
+            int tail = length - start;
+            if (tail == buffer.length) {
+                // Один токен длиннее буфера - расширяем буфер
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            } else if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, tail);
+            }
+            length = tail;
+        }
+    }
+
+    /**
+     * Отбросить слова с частотой не выше порога (счёт с потерями):
+     * таблица частот не растёт вместе с входом. Порог повышается,
+     * пока таблица не уменьшится хотя бы вдвое
+     */
+    private int prune(Map<String, Integer> frequency, int threshold) {
+        int target = maxTrackedWords / 2;
+        while (frequency.size() > target) {
+            int limit = threshold;
+            frequency.values().removeIf(count -> count <= limit);
+            threshold++;
+        }
+        return threshold;
+    }
+}
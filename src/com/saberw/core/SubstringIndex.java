@@ -0,0 +1,207 @@
+package com.saberw.core;
+
+import java.util.Arrays;
+
+/**
+ * Индекс подстрок набора строк (обобщённый суффиксный автомат).
+ * Добавление строки - O(длины), проверка "является ли s подстрокой
+ * хотя бы одной добавленной строки" - O(|s|), независимо от числа строк.
+ */
+public class SubstringIndex {
+
+    private static final int ROOT = 0;
+    private static final long EMPTY_KEY = -1L;
+
+    // Состояния автомата
+    private int[] length;
+    private int[] link;
+    private int[] firstEdge;
+    private int stateCount;
+
+    // Рёбра: список на каждое состояние (для копирования при клонировании)
+    private char[] edgeChar;
+    private int[] edgeNext;
+    private int edgeCount;
+
+    // Переходы (состояние, символ) -> состояние в открытой хэш-таблице
+    private long[] transitionKeys;
+    private int[] transitionValues;
+    private int transitionCount;
+
+    /**
+     * @param expectedChars ожидаемая суммарная длина добавляемых строк
+     */
+    public SubstringIndex(int expectedChars) {
+        int states = Math.max(16, expectedChars * 2 + 2);
+        length = new int[states];
+        link = new int[states];
+        firstEdge = new int[states];
+        Arrays.fill(firstEdge, -1);
+
+        int edges = Math.max(16, expectedChars * 3 + 3);
+        edgeChar = new char[edges];
+        edgeNext = new int[edges];
+
+        int tableSize = Integer.highestOneBit(edges * 2 - 1) << 1;
+        transitionKeys = new long[tableSize];
+        transitionValues = new int[tableSize];
+        Arrays.fill(transitionKeys, EMPTY_KEY);
+
+        link[ROOT] = -1;
+        stateCount = 1;
+    }
+
+    /**
+     * Является ли строка подстрокой хотя бы одной из добавленных
+     */
+    public boolean contains(CharSequence text) {
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = transition(state, text.charAt(i));
+            if (state < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(CharSequence text) {
+        int last = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            last = extend(last, text.charAt(i));
+        }
+    }
+
+    private int extend(int last, char c) {
+        // Переход уже есть (строка продолжает уже известную подстроку)
+        int existing = transition(last, c);
+        if (existing >= 0) {
+            if (length[last] + 1 == length[existing]) {
+                return existing;
+            }
+            int clone = cloneState(existing, length[last] + 1);
+            for (int p = last; p >= 0 && transition(p, c) == existing; p = link[p]) {
+                setTransition(p, c, clone);
+            }
+            link[existing] = clone;
+            return clone;
+        }
+
+        int current = newState(length[last] + 1);
+        int p = last;
+        while (p >= 0 && transition(p, c) < 0) {
+            setTransition(p, c, current);
+            p = link[p];
+        }
+
+        if (p < 0) {
+            link[current] = ROOT;
+        } else {
+            int q = transition(p, c);
+            if (length[p] + 1 == length[q]) {
+                link[current] = q;
+            } else {
+                int clone = cloneState(q, length[p] + 1);
+                for (; p >= 0 && transition(p, c) == q; p = link[p]) {
+                    setTransition(p, c, clone);
+                }
+                link[q] = clone;
+                link[current] = clone;
+            }
+        }
+        return current;
+    }
+
+    private int newState(int stateLength) {
+        if (stateCount == length.length) {
+            int capacity = stateCount * 2;
+            length = Arrays.copyOf(length, capacity);
+            link = Arrays.copyOf(link, capacity);
+            firstEdge = Arrays.copyOf(firstEdge, capacity);
+            Arrays.fill(firstEdge, stateCount, capacity, -1);
+        }
+        int state = stateCount++;
+        length[state] = stateLength;
+        link[state] = -1;
+        firstEdge[state] = -1;
+        return state;
+    }
+
+    private int cloneState(int source, int stateLength) {
+        int clone = newState(stateLength);
+        link[clone] = link[source];
+        for (int e = firstEdge[source]; e >= 0; e = edgeNext[e]) {
+            setTransition(clone, edgeChar[e], transition(source, edgeChar[e]));
+        }
+        return clone;
+    }
+
+    private int transition(int state, char c) {
+        long key = ((long) state << 16) | c;
+        int mask = transitionKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            long existing = transitionKeys[slot];
+            if (existing == key) {
+                return transitionValues[slot];
+            }
+            if (existing == EMPTY_KEY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void setTransition(int state, char c, int target) {
+        long key = ((long) state << 16) | c;
+        int mask = transitionKeys.length - 1;
+        int slot = hash(key) & mask;
+        while (transitionKeys[slot] != EMPTY_KEY && transitionKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (transitionKeys[slot] == EMPTY_KEY) {
+            // Новое ребро: добавляем в список рёбер состояния
+            if (edgeCount == edgeChar.length) {
+                edgeChar = Arrays.copyOf(edgeChar, edgeCount * 2);
+                edgeNext = Arrays.copyOf(edgeNext, edgeCount * 2);
+            }
+            edgeChar[edgeCount] = c;
+            edgeNext[edgeCount] = firstEdge[state];
+            firstEdge[state] = edgeCount++;
+
+            transitionKeys[slot] = key;
+            transitionCount++;
+        }
+        transitionValues[slot] = target;
+
+        if (transitionCount * 2 > transitionKeys.length) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        long[] oldKeys = transitionKeys;
+        int[] oldValues = transitionValues;
+
+        transitionKeys = new long[oldKeys.length * 2];
+        transitionValues = new int[oldKeys.length * 2];
+        Arrays.fill(transitionKeys, EMPTY_KEY);
+
+        int mask = transitionKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY_KEY) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (transitionKeys[slot] != EMPTY_KEY) {
+                slot = (slot + 1) & mask;
+            }
+            transitionKeys[slot] = oldKeys[i];
+            transitionValues[slot] = oldValues[i];
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
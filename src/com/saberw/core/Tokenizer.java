@@ -1,23 +1,36 @@
 package com.saberw.core;
 
 import com.saberw.model.Token;
+import com.saberw.model.TokenTable;
 import com.saberw.model.Candidate;
 import com.saberw.util.ValidationHelper;
+import com.saberw.util.WordCounter;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class Tokenizer {
     
-    private static final Pattern TOKEN_PATTERN = 
-        Pattern.compile("([\\p{L}\\p{N}_]+|[^\\p{L}\\p{N}_]+)");
+    // Типы токенов в массиве троек (начало, конец, тип)
+    public static final int TYPE_WORD = 0;
+    public static final int TYPE_SEPARATOR = 1;
+    
+    // Быстрая таблица классов для ASCII: буква, цифра или '_'
+    private static final boolean[] ASCII_WORD_CHARS = new boolean[128];
+    static {
+        for (int c = 0; c < 128; c++) {
+            ASCII_WORD_CHARS[c] = isWordCodePoint(c);
+        }
+    }
+    
     private final PhraseFinder phraseFinder;
     
     public Tokenizer() {
         this.phraseFinder = new PhraseFinder();
     }
     
+    /**
+     * Разбиение на токены в виде списка объектов (для существующего кода)
+     */
     public List<Token> tokenize(String text) {
         List<Token> tokens = new ArrayList<>();
         
@@ -25,31 +38,149 @@ public class Tokenizer {
             return tokens;
         }
         
-        Matcher matcher = TOKEN_PATTERN.matcher(text);
-        int position = 0;
+        int[] triples = scan(text);
+        for (int i = 0; i < triples.length; i += 3) {
+            int start = triples[i];
+            int end = triples[i + 1];
+            Token.Type type = triples[i + 2] == TYPE_WORD ? Token.Type.WORD : Token.Type.SEPARATOR;
+            tokens.add(new Token(text.substring(start, end), type, start));
+        }
         
-        while (matcher.find()) {
-            String value = matcher.group();
-            Token.Type type = isWord(value) ? Token.Type.WORD : Token.Type.SEPARATOR;
+        return tokens;
+    }
+    
+    /**
+     * Разбиение на токены в компактную таблицу (без объектов на каждый токен)
+     */
+    public TokenTable tokenizeTable(CharSequence text) {
+        int length = text == null ? 0 : text.length();
+        int capacity = Math.max(16, length / 4);
+        int[] starts = new int[capacity];
+        int[] lengths = new int[capacity];
+        BitSet wordFlags = new BitSet(capacity);
+        int size = 0;
+        
+        int start = 0;
+        while (start < length) {
+            boolean word = isWordAt(text, start, length);
+            int end = tokenEnd(text, start, length);
             
-            tokens.add(new Token(value, type, position));
-            position += value.length();
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            starts[size] = start;
+            lengths[size] = end - start;
+            if (word) {
+                wordFlags.set(size);
+            }
+            size++;
+            start = end;
         }
         
-        return tokens;
+        // Обрезаем колонки до фактического размера
+        if (size < starts.length) {
+            starts = Arrays.copyOf(starts, size);
+            lengths = Arrays.copyOf(lengths, size);
+        }
+        
+        return new TokenTable(length == 0 ? "" : text, starts, lengths, wordFlags, size);
     }
     
+    /**
+     * Разбор без регулярного выражения и без создания строк.
+     * Границы совпадают с шаблоном ([\p{L}\p{N}_]+|[^\p{L}\p{N}_]+),
+     * суррогатные пары рассматриваются как один символ.
+     * @return тройки (начало, конец, тип) подряд в одном массиве
+     */
+    public static int[] scan(CharSequence text) {
+        int length = text.length();
+        int[] triples = new int[Math.min(length, 1024) * 3 + 3];
+        int count = 0;
+        
+        int start = 0;
+        while (start < length) {
+            boolean word = isWordAt(text, start, length);
+            int end = tokenEnd(text, start, length);
+            
+            if (count + 3 > triples.length) {
+                triples = Arrays.copyOf(triples, triples.length * 2);
+            }
+            triples[count++] = start;
+            triples[count++] = end;
+            triples[count++] = word ? TYPE_WORD : TYPE_SEPARATOR;
+            start = end;
+        }
+        
+        return count == triples.length ? triples : Arrays.copyOf(triples, count);
+    }
     
-    private boolean isWord(String token) {
-        if (token == null || token.isEmpty()) {
-            return false;
+    /**
+     * Конец токена, начинающегося в позиции start (не дальше limit)
+     */
+    public static int tokenEnd(CharSequence text, int start, int limit) {
+        boolean word = isWordAt(text, start, limit);
+        int i = start + charCount(text, start, limit);
+        
+        while (i < limit && isWordAt(text, i, limit) == word) {
+            i += charCount(text, i, limit);
         }
         
-        char firstChar = token.charAt(0);
-        return Character.isLetterOrDigit(firstChar) || firstChar == '_';
+        return i;
     }
     
-   
+    /**
+     * Проходит ли между символами pos - 1 и pos граница токенов
+     * (края текста - тоже границы, суррогатная пара не разрывается)
+     */
+    public static boolean isTokenBoundary(CharSequence text, int pos) {
+        int n = text.length();
+        if (pos <= 0 || pos >= n) {
+            return true;
+        }
+        if (Character.isLowSurrogate(text.charAt(pos))
+                && Character.isHighSurrogate(text.charAt(pos - 1))) {
+            return false;
+        }
+        int before = pos - 1;
+        if (before > 0 && Character.isLowSurrogate(text.charAt(before))
+                && Character.isHighSurrogate(text.charAt(before - 1))) {
+            before--;
+        }
+        return isWordAt(text, before, n) != isWordAt(text, pos, n);
+    }
+    
+    /**
+     * Является ли символ в позиции i частью слова (буква, цифра или '_')
+     */
+    public static boolean isWordAt(CharSequence text, int i, int limit) {
+        char c = text.charAt(i);
+        if (c < 128) {
+            return ASCII_WORD_CHARS[c];
+        }
+        if (Character.isHighSurrogate(c) && i + 1 < limit) {
+            char low = text.charAt(i + 1);
+            if (Character.isLowSurrogate(low)) {
+                return isWordCodePoint(Character.toCodePoint(c, low));
+            }
+        }
+        return isWordCodePoint(c);
+    }
+    
+    public static boolean isWordCodePoint(int codePoint) {
+        if (codePoint == '_' || Character.isLetter(codePoint)) {
+            return true;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.DECIMAL_DIGIT_NUMBER ||
+               type == Character.LETTER_NUMBER ||
+               type == Character.OTHER_NUMBER;
+    }
+    
+    private static int charCount(CharSequence text, int i, int limit) {
+        return Character.isHighSurrogate(text.charAt(i)) && i + 1 < limit &&
+               Character.isLowSurrogate(text.charAt(i + 1)) ? 2 : 1;
+    }
     
     public List<Candidate> findPhraseCandidates(List<Token> tokens, 
                                                 int maxPhraseTokens, 
@@ -61,25 +192,35 @@ public class Tokenizer {
         // ИЛИ для очень больших текстов можно использовать:
         // return phraseFinder.findPhrasesWithSuffixArray(tokens, maxPhraseTokens, minFrequency, minPhraseLength);
     }
+    
+    public List<Candidate> findPhraseCandidates(TokenTable tokens, 
+                                                int maxPhraseTokens, 
+                                                int minFrequency, 
+                                                int minPhraseLength) {
+        return phraseFinder.findPhrasesOptimized(tokens, maxPhraseTokens, minFrequency, minPhraseLength);
+    }
  // Метод для поиска слов для кодирования (как раньше)
     public List<String> findWordsToEncode(String text, int minFrequency) {
-        List<Token> tokens = tokenize(text);
-        
-        Map<String, Integer> wordFrequency = new HashMap<>();
+        List<String> wordsToEncode = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return wordsToEncode;
+        }
         
-        for (Token token : tokens) {
-            if (token.isWord() && ValidationHelper.shouldEncodeWord(token.getValue())) {  // Используем старый метод
-                String word = token.getValue();
-                wordFrequency.put(word, wordFrequency.getOrDefault(word, 0) + 1);
+        // Считаем участки текста: повторное слово не создаёт ни строки, ни Integer
+        int[] triples = scan(text);
+        WordCounter wordFrequency = new WordCounter(text);
+        for (int i = 0; i < triples.length; i += 3) {
+            if (triples[i + 2] == TYPE_WORD) {
+                wordFrequency.add(triples[i], triples[i + 1]);
             }
         }
         
-        List<String> wordsToEncode = new ArrayList<>();
-        for (Map.Entry<String, Integer> entry : wordFrequency.entrySet()) {
-            if (entry.getValue() >= minFrequency) {
-                wordsToEncode.add(entry.getKey());
+        // Проверка слова - один раз на слово, а не на вхождение
+        wordFrequency.forEach((word, frequency) -> {
+            if (frequency >= minFrequency && ValidationHelper.shouldEncodeWord(word)) {  // Используем старый метод
+                wordsToEncode.add(word);
             }
-        }
+        });
         
         return wordsToEncode;
     }
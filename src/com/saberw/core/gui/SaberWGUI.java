@@ -38,6 +38,8 @@ import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
+import com.saberw.core.CompiledCodec;
+import com.saberw.core.ResultCache;
 import com.saberw.core.SaberWCore;
 import com.saberw.core.SimpleZipper;
 import com.saberw.model.CompressionResult;
@@ -59,6 +61,13 @@ public class SaberWGUI extends JFrame {
     private JSpinner fontSizeSpinner;
     private JComboBox<String> compressionModeCombo;
     
+    // Скомпилированный словарь последней распаковки (пока текст словаря не меняется)
+    private String cachedDictionaryText;
+    private CompiledCodec cachedCodec;
+    
+    // Результаты сжатия и распаковки (повторное нажатие на тот же текст - из кэша)
+    private final ResultCache resultCache = new ResultCache();
+    
     public SaberWGUI() {
         super("SaberW Компрессор текста v1.1");
         initializeUI();
@@ -249,6 +258,7 @@ public class SaberWGUI extends JFrame {
         try {
             // ВСЕГДА используем максимальное сжатие CJK
             SaberWCore core = new SaberWCore(inputText, false, false);
+            core.setResultCache(resultCache);
             
             int minLength = (int) minWordLengthSpinner.getValue();
             int minFreq = (int) minFrequencySpinner.getValue();
@@ -280,12 +290,16 @@ public class SaberWGUI extends JFrame {
         }
         
         try {
-            // Парсим словарь из текстового представления
-            List<DictionaryEntry> dictionary = parseDictionary(dictionaryText);
+            // Парсим и компилируем словарь только если его текст изменился
+            if (cachedCodec == null || !dictionaryText.equals(cachedDictionaryText)) {
+                cachedCodec = new CompiledCodec(parseDictionary(dictionaryText));
+                cachedDictionaryText = dictionaryText;
+            }
             
             // Создаем ядро (для декомпрессии параметры не важны)
             SaberWCore core = new SaberWCore("", false, false);
-            String decompressed = core.decompress(compressedText, dictionary);
+            core.setResultCache(resultCache);
+            String decompressed = core.decompress(compressedText, cachedCodec);
             
             inputTextArea.setText(decompressed);
             
@@ -306,11 +320,8 @@ public class SaberWGUI extends JFrame {
             if (line.contains("=")) {
                 String[] parts = line.split("=", 2);
                 if (parts.length == 2) {
-                    // Убираем частоту из строки если есть
-                    String word = parts[1].trim();
-                    if (word.contains(" ")) {
-                        word = word.substring(0, word.indexOf(" "));
-                    }
+                    // Убираем частоту из строки если есть (фразы сами содержат пробелы)
+                    String word = parts[1].trim().replaceFirst(" \\(freq: \\d+\\)$", "");
                     dictionary.add(new DictionaryEntry(word, parts[0].trim(), 0));
                 }
             }
@@ -414,6 +425,7 @@ public class SaberWGUI extends JFrame {
         try {
             // 1. Сначала SaberW
             SaberWCore core = new SaberWCore(inputText, false, true);
+            core.setResultCache(resultCache);
             CompressionResult saberResult = core.compress();
             String saberCompressed = saberResult.getCompressedText();
             
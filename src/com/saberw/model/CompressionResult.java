@@ -24,29 +24,66 @@ public class CompressionResult {
         private final int compressedLength;
         private final int dictionaryEntries;
         private final double compressionRatio;
+        // Сколько символов оптимальный разбор сэкономил по сравнению с жадным
+        private final int savedVsGreedy;
+        // Оценка в токенах по модели стоимости (costModel == null - не считалась)
+        private final String costModel;
+        private final int originalTokens;
+        private final int compressedTokens;
         
         public Statistics(int originalLength, int compressedLength, 
                          int dictionaryEntries) {
+            this(originalLength, compressedLength, dictionaryEntries, 0);
+        }
+        
+        public Statistics(int originalLength, int compressedLength, 
+                         int dictionaryEntries, int savedVsGreedy) {
+            this(originalLength, compressedLength, dictionaryEntries, savedVsGreedy, null, 0, 0);
+        }
+        
+        public Statistics(int originalLength, int compressedLength, 
+                         int dictionaryEntries, int savedVsGreedy,
+                         String costModel, int originalTokens, int compressedTokens) {
             this.originalLength = originalLength;
             this.compressedLength = compressedLength;
             this.dictionaryEntries = dictionaryEntries;
+            this.savedVsGreedy = savedVsGreedy;
             this.compressionRatio = originalLength > 0 ? 
                 (double) compressedLength / originalLength : 0.0;
+            this.costModel = costModel;
+            this.originalTokens = originalTokens;
+            this.compressedTokens = compressedTokens;
         }
         
         public int getOriginalLength() { return originalLength; }
         public int getCompressedLength() { return compressedLength; }
         public int getDictionaryEntries() { return dictionaryEntries; }
         public double getCompressionRatio() { return compressionRatio; }
+        public int getSavedVsGreedy() { return savedVsGreedy; }
+        public String getCostModel() { return costModel; }
+        public int getOriginalTokens() { return originalTokens; }
+        public int getCompressedTokens() { return compressedTokens; }
+        
+        public double getTokenRatio() {
+            return originalTokens > 0 ? (double) compressedTokens / originalTokens : 0.0;
+        }
         
         @Override
         public String toString() {
-            return String.format(
+            String text = String.format(
                 "Original: %d chars, Compressed: %d chars, " +
                 "Dictionary: %d entries, Ratio: %.2f",
                 originalLength, compressedLength, 
                 dictionaryEntries, compressionRatio
             );
+            if (savedVsGreedy != 0) {
+                text += String.format(", Saved vs greedy: %d chars", savedVsGreedy);
+            }
+            if (costModel != null) {
+                text += String.format(", Tokens (%s): %d -> %d, Token ratio: %.2f",
+                    costModel, originalTokens, compressedTokens, getTokenRatio());
+            }
+            return text;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.saberw.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Компактная таблица токенов: исходный текст + колонки смещений.
+ * Вместо объекта Token со строкой на каждый токен хранится
+ * 4 байта начала, 4 байта длины и 1 бит типа (слово/разделитель).
+ */
+public class TokenTable {
+    private final CharSequence text;
+    private final int[] starts;
+    private final int[] lengths;
+    private final BitSet wordFlags;
+    private final int size;
+
+    public TokenTable(CharSequence text, int[] starts, int[] lengths,
+                      BitSet wordFlags, int size) {
+        this.text = text;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.wordFlags = wordFlags;
+        this.size = size;
+    }
+
+    public CharSequence getText() { return text; }
+    public int size() { return size; }
+
+    public int getStart(int index) { return starts[index]; }
+    public int getLength(int index) { return lengths[index]; }
+    public int getEnd(int index) { return starts[index] + lengths[index]; }
+
+    public boolean isWord(int index) { return wordFlags.get(index); }
+    public boolean isSeparator(int index) { return !wordFlags.get(index); }
+
+    /**
+     * Значение токена (создаёт строку - только там, где она действительно нужна)
+     */
+    public String getValue(int index) {
+        return text.subSequence(starts[index], starts[index] + lengths[index]).toString();
+    }
+
+    /**
+     * Текст токенов [from, to) одной строкой - это непрерывный участок исходного текста
+     */
+    public String getText(int from, int to) {
+        if (from >= to) return "";
+        return text.subSequence(starts[from], getEnd(to - 1)).toString();
+    }
+
+    /**
+     * Совпадает ли значение токена со строкой (без создания подстроки)
+     */
+    public boolean valueEquals(int index, CharSequence value) {
+        int length = lengths[index];
+        if (value.length() != length) return false;
+
+        int start = starts[index];
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(start + i) != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Примерный объём памяти колонок в байтах (без самого текста)
+     */
+    public long estimateMemoryBytes() {
+        return 4L * starts.length + 4L * lengths.length + wordFlags.size() / 8;
+    }
+
+    /**
+     * Адаптер для кода, который работает со списком объектов
+     */
+    public List<Token> toTokens() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Token.Type type = isWord(i) ? Token.Type.WORD : Token.Type.SEPARATOR;
+            tokens.add(new Token(getValue(i), type, starts[i]));
+        }
+        return tokens;
+    }
+
+    /**
+     * Обратный адаптер: таблица из готового списка токенов
+     */
+    public static TokenTable fromTokens(List<Token> tokens) {
+        StringBuilder text = new StringBuilder();
+        int[] starts = new int[tokens.size()];
+        int[] lengths = new int[tokens.size()];
+        BitSet wordFlags = new BitSet(tokens.size());
+
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            starts[i] = text.length();
+            lengths[i] = token.length();
+            wordFlags.set(i, token.isWord());
+            text.append(token.getValue());
+        }
+
+        return new TokenTable(text.toString(), starts, lengths, wordFlags, tokens.size());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TokenTable[%d tokens, %d chars]", size, text.length());
+    }
+}
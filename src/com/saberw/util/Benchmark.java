@@ -2,13 +2,21 @@ package com.saberw.util;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import com.saberw.core.FrequencyCounter;
 import com.saberw.core.PhraseFinder;
 import com.saberw.core.Tokenizer;
 import com.saberw.model.Candidate;
 import com.saberw.model.Token;
+import com.saberw.model.TokenTable;
 
 public class Benchmark {
     
@@ -67,32 +75,30 @@ public class Benchmark {
                                                   int maxPhraseTokens, 
                                                   int minFrequency, 
                                                   int minPhraseLength) {
-        Map<String, Integer> phraseFrequency = new HashMap<>();
-        int n = tokens.size();
+        // Фраза - участок общего текста токенов: окна считаются без строк
+        TokenTable table = TokenTable.fromTokens(tokens);
+        WordCounter phraseFrequency = new WordCounter(table.getText());
+        int n = table.size();
         
         for (int i = 0; i < n; i++) {
             for (int len = 2; len <= maxPhraseTokens && i + len <= n; len++) {
-                StringBuilder phraseText = new StringBuilder();
-                for (int j = i; j < i + len; j++) {
-                    phraseText.append(tokens.get(j).getValue());
-                }
-                
-                String phrase = phraseText.toString();
+                int start = table.getStart(i);
+                int end = table.getEnd(i + len - 1);
                 
-                if (phrase.length() < minPhraseLength) {
+                if (end - start < minPhraseLength) {
                     continue;
                 }
                 
-                phraseFrequency.put(phrase, phraseFrequency.getOrDefault(phrase, 0) + 1);
+                phraseFrequency.add(start, end);
             }
         }
         
         List<Candidate> candidates = new ArrayList<>();
-        for (Map.Entry<String, Integer> entry : phraseFrequency.entrySet()) {
-            if (entry.getValue() >= minFrequency) {
-                candidates.add(new Candidate(entry.getKey(), entry.getValue()));
+        phraseFrequency.forEach((phrase, frequency) -> {
+            if (frequency >= minFrequency) {
+                candidates.add(new Candidate(phrase, frequency));
             }
-        }
+        });
         
         candidates.sort((a, b) -> {
             int scoreA = a.getText().length() * a.getFrequency();
@@ -103,6 +109,278 @@ public class Benchmark {
         return candidates;
     }
     
+    /**
+     * Сравнение токенизаторов в стиле JMH: прогрев, замер, среднее время на операцию
+     */
+    public static void compareTokenizers(String text, int warmupIterations, int iterations) {
+        System.out.println("=== Токенизация: регулярное выражение vs автомат ===\n");
+        
+        // Проверяем, что границы токенов совпадают
+        List<Token> oldTokens = tokenizeOld(text);
+        int[] triples = Tokenizer.scan(text);
+        boolean same = oldTokens.size() * 3 == triples.length;
+        for (int i = 0; same && i < oldTokens.size(); i++) {
+            Token token = oldTokens.get(i);
+            same = token.getPosition() == triples[i * 3] &&
+                   token.getPosition() + token.length() == triples[i * 3 + 1];
+        }
+        System.out.printf("Токенов: %,d, границы совпадают: %s%n", 
+                         oldTokens.size(), same ? "ДА" : "НЕТ");
+        
+        long sink = 0; // не даём JIT выбросить результат
+        
+        // Прогрев
+        for (int i = 0; i < warmupIterations; i++) {
+            sink += tokenizeOld(text).size();
+            sink += Tokenizer.scan(text).length;
+        }
+        
+        long regexTime = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            sink += tokenizeOld(text).size();
+            regexTime += System.nanoTime() - start;
+        }
+        
+        long scanTime = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            sink += Tokenizer.scan(text).length;
+            scanTime += System.nanoTime() - start;
+        }
+        
+        Tokenizer tokenizer = new Tokenizer();
+        long listTime = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            sink += tokenizer.tokenize(text).size();
+            listTime += System.nanoTime() - start;
+        }
+        
+        System.out.printf("Regex + List<Token>:    %.3f мс/оп%n", regexTime / 1e6 / iterations);
+        System.out.printf("Автомат (int[] тройки): %.3f мс/оп%n", scanTime / 1e6 / iterations);
+        System.out.printf("Автомат + List<Token>:  %.3f мс/оп%n", listTime / 1e6 / iterations);
+        System.out.printf("Ускорение (тройки): %.1f раз%n", (double) regexTime / scanTime);
+        System.out.println("(контрольная сумма: " + sink + ")");
+    }
+    
+    // Прежний токенизатор на регулярном выражении (для сравнения)
+    private static final Pattern OLD_TOKEN_PATTERN = 
+        Pattern.compile("([\\p{L}\\p{N}_]+|[^\\p{L}\\p{N}_]+)");
+    
+    private static List<Token> tokenizeOld(String text) {
+        List<Token> tokens = new ArrayList<>();
+        Matcher matcher = OLD_TOKEN_PATTERN.matcher(text);
+        int position = 0;
+        
+        while (matcher.find()) {
+            String value = matcher.group();
+            char firstChar = value.charAt(0);
+            Token.Type type = Character.isLetterOrDigit(firstChar) || firstChar == '_' 
+                ? Token.Type.WORD : Token.Type.SEPARATOR;
+            
+            tokens.add(new Token(value, type, position));
+            position += value.length();
+        }
+        
+        return tokens;
+    }
+    
+    /**
+     * Сравнение занимаемой кучи: List<Token> против TokenTable
+     */
+    public static void compareTokenMemory(String text) {
+        System.out.println("=== Память токенов: List<Token> vs TokenTable ===\n");
+        System.out.printf("Размер корпуса: %,d символов%n", text.length());
+        
+        Tokenizer tokenizer = new Tokenizer();
+        
+        long before = usedHeap();
+        List<Token> list = tokenizer.tokenize(text);
+        long listBytes = usedHeap() - before;
+        int listSize = list.size();
+        list = null; // отпускаем список перед следующим замером
+        
+        before = usedHeap();
+        TokenTable table = tokenizer.tokenizeTable(text);
+        long tableBytes = usedHeap() - before;
+        
+        System.out.printf("List<Token>: %,d токенов, %,d КБ, %.1f байт/токен%n",
+                         listSize, listBytes / 1024, (double) listBytes / listSize);
+        System.out.printf("TokenTable:  %,d токенов, %,d КБ, %.1f байт/токен (оценка колонок: %.1f)%n",
+                         table.size(), tableBytes / 1024, (double) tableBytes / table.size(),
+                         (double) table.estimateMemoryBytes() / table.size());
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    // Фиксированный большой корпус для замеров
+    public static String buildLargeCorpus(int targetChars) {
+        String[] sentences = {
+            "Программа SaberW предназначена для сжатия текста. ",
+            "Сжатие текста позволяет экономить место в контекстном окне. ",
+            "Контекстное окно ограничено, поэтому сжатие текста очень важно. ",
+            "The compressor replaces frequent words with short codes. ",
+            "Codes are taken from CJK Extension A and never clash with the text. ",
+            "2026-01-04 12:00:01 INFO request_id=42 status=200 latency_ms=17\n"
+        };
+        
+        StringBuilder corpus = new StringBuilder(targetChars + 128);
+        int i = 0;
+        while (corpus.length() < targetChars) {
+            corpus.append(sentences[i % sentences.length]);
+            i = i * 7 + 3 & 0xFFFF; // детерминированный порядок без Random
+        }
+        return corpus.toString();
+    }
+    
+    // Корпус с множеством разных фраз: строки лога с меняющимися значениями
+    public static String buildPhraseCorpus(int targetChars) {
+        StringBuilder corpus = new StringBuilder(targetChars + 128);
+        int i = 0;
+        while (corpus.length() < targetChars) {
+            corpus.append("2026-01-04 12:00:").append(i % 60)
+                  .append(" INFO request_id=").append(i % 997)
+                  .append(" status=").append(i % 7 == 0 ? 500 : 200)
+                  .append(" latency_ms=").append(i % 89).append('\n');
+            i = (i * 7 + 3) & 0xFFFF;
+        }
+        return corpus.toString();
+    }
+    
+    /**
+     * Поиск фраз с удалением подфраз: прежний квадратичный перебор contains()
+     * по всем окнам против PhraseFinder.findPhrasesOptimized (индекс подстрок).
+     * Набор оставшихся фраз не зависит от порядка кандидатов одной длины,
+     * поэтому результаты сравниваются как множества
+     */
+    public static void compareSubphraseRemoval(String text, int maxPhraseTokens) {
+        System.out.println("=== Удаление подфраз ===\n");
+        
+        Tokenizer tokenizer = new Tokenizer();
+        TokenTable tokens = tokenizer.tokenizeTable(text);
+        
+        // Прежний путь: все различные окна токенов длиной 2..maxPhraseTokens и перебор
+        long startTime = System.nanoTime();
+        Map<String, Integer> windows = new LinkedHashMap<>();
+        for (int length = 2; length <= maxPhraseTokens; length++) {
+            for (int i = 0; i + length <= tokens.size(); i++) {
+                windows.merge(tokens.getText(i, i + length), 1, Integer::sum);
+            }
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : windows.entrySet()) {
+            candidates.add(new Candidate(entry.getKey(), entry.getValue()));
+        }
+        List<Candidate> oldResult = removeDuplicatePhrasesOld(candidates);
+        long oldTime = System.nanoTime() - startTime;
+        System.out.printf("Кандидатов: %,d%n", candidates.size());
+        
+        // Новый путь: те же окна (частота от 1, длина от 1 символа)
+        startTime = System.nanoTime();
+        List<Candidate> newResult = new PhraseFinder().findPhrasesOptimized(tokens, maxPhraseTokens, 1, 1);
+        long newTime = System.nanoTime() - startTime;
+        
+        Map<String, Integer> oldPhrases = new HashMap<>();
+        for (Candidate candidate : oldResult) {
+            oldPhrases.put(candidate.getText(), candidate.getFrequency());
+        }
+        Map<String, Integer> newPhrases = new HashMap<>();
+        for (Candidate candidate : newResult) {
+            newPhrases.put(candidate.getText(), candidate.getFrequency());
+        }
+        boolean same = oldPhrases.equals(newPhrases);
+        
+        System.out.printf("Перебор contains():  %.1f мс, осталось %,d фраз%n", oldTime / 1e6, oldResult.size());
+        System.out.printf("Индекс подстрок:     %.1f мс, осталось %,d фраз%n", newTime / 1e6, newResult.size());
+        System.out.printf("Результаты совпадают: %s, ускорение: %.1f раз%n", 
+                         same ? "ДА" : "НЕТ", (double) oldTime / newTime);
+    }
+    
+    // Прежнее удаление подфраз (для сравнения)
+    private static List<Candidate> removeDuplicatePhrasesOld(List<Candidate> candidates) {
+        List<Candidate> result = new ArrayList<>();
+        Set<String> seenPhrases = new HashSet<>();
+        
+        candidates.sort((a, b) -> Integer.compare(b.getText().length(), a.getText().length()));
+        
+        for (Candidate candidate : candidates) {
+            String phrase = candidate.getText();
+            boolean isSubphrase = false;
+            
+            for (String existingPhrase : seenPhrases) {
+                if (existingPhrase.contains(phrase)) {
+                    isSubphrase = true;
+                    break;
+                }
+            }
+            
+            if (!isSubphrase) {
+                result.add(candidate);
+                seenPhrases.add(phrase);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Подсчёт частот слов: прежний HashMap подряд против FrequencyCounter
+     * на 1..maxParallelism потоках (ForkJoinPool заданного размера)
+     */
+    public static void compareFrequencyScaling(String text, int maxParallelism, int iterations) {
+        System.out.println("=== Параллельный подсчёт частот ===\n");
+        System.out.printf("Размер корпуса: %,d символов, ядер: %d%n",
+                         text.length(), Runtime.getRuntime().availableProcessors());
+        
+        Map<String, Integer> expected = null;
+        long sequentialTime = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            long startTime = System.nanoTime();
+            expected = countWordsOld(text);
+            sequentialTime = Math.min(sequentialTime, System.nanoTime() - startTime);
+        }
+        System.out.printf("HashMap подряд:  %,8.1f мс, слов: %,d%n", sequentialTime / 1e6, expected.size());
+        
+        for (int parallelism = 1; parallelism <= maxParallelism; parallelism *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                FrequencyCounter counter = new FrequencyCounter(pool, FrequencyCounter.DEFAULT_CHUNK_SIZE);
+                Map<String, Integer> result = null;
+                long time = Long.MAX_VALUE;
+                for (int i = 0; i < iterations; i++) {
+                    long startTime = System.nanoTime();
+                    result = counter.countWords(text, word -> true);
+                    time = Math.min(time, System.nanoTime() - startTime);
+                }
+                System.out.printf("Потоков: %2d     %,8.1f мс, ускорение: %4.1f раз, совпадает: %s%n",
+                                 parallelism, time / 1e6, (double) sequentialTime / time,
+                                 expected.equals(result) ? "ДА" : "НЕТ");
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+    
+    // Прежний подсчёт частот (для сравнения)
+    private static Map<String, Integer> countWordsOld(String text) {
+        Map<String, Integer> frequency = new HashMap<>();
+        TokenTable tokens = new Tokenizer().tokenizeTable(text);
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.isWord(i)) {
+                String word = tokens.getValue(i);
+                frequency.put(word, frequency.getOrDefault(word, 0) + 1);
+            }
+        }
+        return frequency;
+    }
+    
     public static void testWithLargeText() {
         System.out.println("\n=== Тест с большим текстом ===");
         
@@ -118,5 +396,17 @@ public class Benchmark {
         System.out.printf("Размер текста: %,d символов%n", largeText.length());
         
         runPerformanceTest(largeText.toString(), 5);
+        
+        System.out.println();
+        compareTokenizers(largeText.toString(), 5, 20);
+        
+        System.out.println();
+        compareTokenMemory(buildLargeCorpus(2_000_000));
+        
+        System.out.println();
+        compareSubphraseRemoval(buildPhraseCorpus(20_000), 5);
+        
+        System.out.println();
+        compareFrequencyScaling(buildLargeCorpus(100_000_000), 16, 3);
     }
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+package com.saberw.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Стоимость в токенах языковой модели по словарю BPE, без сети.
+ * Словарь - файл в формате tiktoken: строка "<токен в base64> <ранг>" на токен
+ * (например, cl100k_base.tiktoken). Текст режется на куски регулярным
+ * выражением токенизатора, каждый кусок (байты UTF-8) склеивается по рангам,
+ * число получившихся частей - его стоимость.
+ *
+ * Стоимость кусков кэшируется: в обычном тексте их немного разных, поэтому
+ * после прогрева модель почти не тратит времени на склейку.
+ */
+public class BpeCostModel implements CostModel {
+
+    // Разбиение на куски, как у cl100k_base
+    public static final String CL100K_PATTERN =
+        "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}|" +
+        " ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+";
+
+    // Словарь, который ищется в classpath (кладётся рядом с классами при сборке)
+    public static final String BUNDLED_VOCABULARY = "/cl100k_base.tiktoken";
+
+    public static final int DEFAULT_CACHE_SIZE = 1 << 16;
+
+    // Ключ - байты токена, по одному символу ISO-8859-1 на байт
+    private final Map<String, Integer> ranks;
+    private final Pattern pattern;
+    private final String name;
+    private final String fingerprint;
+
+    private final int maxCacheSize;
+    private final Map<String, Integer> cache = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public BpeCostModel(String name, Map<String, Integer> ranks, String pattern, int maxCacheSize) {
+        if (maxCacheSize < 1) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным");
+        }
+        this.name = name;
+        this.ranks = ranks;
+        this.pattern = Pattern.compile(pattern);
+        this.maxCacheSize = maxCacheSize;
+        this.fingerprint = name + "/" + ranks.size() + "/" + digest(ranks, pattern);
+    }
+
+    /**
+     * SHA-256 от шаблона и токенов в порядке рангов (считается один раз)
+     */
+    private static String digest(Map<String, Integer> ranks, String pattern) {
+        List<Map.Entry<String, Integer>> tokens = new ArrayList<>(ranks.entrySet());
+        tokens.sort(Map.Entry.comparingByValue());
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(pattern.getBytes(StandardCharsets.UTF_8));
+            for (Map.Entry<String, Integer> token : tokens) {
+                // Длина перед байтами токена - границы однозначны
+                String line = token.getValue() + " " + token.getKey().length() + ":" + token.getKey();
+                digest.update(line.getBytes(StandardCharsets.ISO_8859_1));
+            }
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b & 0xFF));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Загрузить словарь tiktoken из файла
+     */
+    public static BpeCostModel load(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            String name = file.getFileName().toString().replaceFirst("\\.tiktoken$", "");
+            return new BpeCostModel(name, readRanks(input), CL100K_PATTERN, DEFAULT_CACHE_SIZE);
+        }
+    }
+
+    /**
+     * Словарь из classpath (BUNDLED_VOCABULARY)
+     */
+    public static BpeCostModel loadBundled() throws IOException {
+        try (InputStream input = BpeCostModel.class.getResourceAsStream(BUNDLED_VOCABULARY)) {
+            if (input == null) {
+                throw new IOException("Словарь BPE не найден в classpath: " + BUNDLED_VOCABULARY);
+            }
+            return new BpeCostModel("cl100k_base", readRanks(input), CL100K_PATTERN, DEFAULT_CACHE_SIZE);
+        }
+    }
+
+    static Map<String, Integer> readRanks(InputStream input) throws IOException {
+        Map<String, Integer> ranks = new HashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.US_ASCII));
+        Base64.Decoder decoder = Base64.getDecoder();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty()) continue;
+            int space = line.indexOf(' ');
+            try {
+                byte[] token = decoder.decode(line.substring(0, space));
+                int rank = Integer.parseInt(line.substring(space + 1).trim());
+                ranks.put(new String(token, StandardCharsets.ISO_8859_1), rank);
+            } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+                throw new IOException("Неверная строка словаря BPE " + lineNumber + ": " + line);
+            }
+        }
+        if (ranks.isEmpty()) {
+            throw new IOException("Словарь BPE пуст");
+        }
+        return ranks;
+    }
+
+    @Override
+    public int cost(CharSequence text) {
+        int total = 0;
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            total += pieceCost(matcher.group());
+        }
+        return total;
+    }
+
+    /**
+     * Пробел перед словом входит в его кусок (" word"), перед кодом - тоже,
+     * поэтому слово и код сравниваются в одинаковом окружении
+     */
+    @Override
+    public int occurrenceCost(String text) {
+        return cost(" " + text);
+    }
+
+    /**
+     * Оценка с запасом: меньшая из экономий после пробела и без него
+     * (после скобки, кавычки, в начале строки слово режется на токены иначе)
+     */
+    @Override
+    public int occurrenceSaving(String word, String code) {
+        return Math.min(occurrenceCost(word) - occurrenceCost(code), cost(word) - cost(code));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Имя, размер и SHA-256 словаря: другой файл с тем же именем даст другой отпечаток
+     */
+    @Override
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getVocabularySize() {
+        return ranks.size();
+    }
+
+    public long getCacheHits() { return hits.sum(); }
+    public long getCacheMisses() { return misses.sum(); }
+
+    private int pieceCost(String piece) {
+        Integer cached = cache.get(piece);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        int cost = countTokens(new String(piece.getBytes(StandardCharsets.UTF_8),
+                                          StandardCharsets.ISO_8859_1));
+        // Переполненный кэш сбрасывается целиком - частые куски вернутся первыми
+        if (cache.size() >= maxCacheSize) {
+            cache.clear();
+        }
+        cache.put(piece, cost);
+        return cost;
+    }
+
+    /**
+     * Склейка по рангам (как в tiktoken): пока есть соседняя пара частей,
+     * которая сама является токеном, склеиваем пару с наименьшим рангом
+     */
+    private int countTokens(String bytes) {
+        int length = bytes.length();
+        if (length <= 1 || ranks.containsKey(bytes)) {
+            return Math.min(length, 1);
+        }
+
+        // Границы частей: части - bytes[bounds[i], bounds[i + 1])
+        int[] bounds = new int[length + 1];
+        for (int i = 0; i <= length; i++) {
+            bounds[i] = i;
+        }
+        int parts = length;
+
+        while (parts > 1) {
+            int bestRank = Integer.MAX_VALUE;
+            int best = -1;
+            for (int i = 0; i + 2 <= parts; i++) {
+                Integer rank = ranks.get(bytes.substring(bounds[i], bounds[i + 2]));
+                if (rank != null && rank < bestRank) {
+                    bestRank = rank;
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            System.arraycopy(bounds, best + 2, bounds, best + 1, parts - best - 1);
+            parts--;
+        }
+        return parts;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%,d токенов, кэш: %,d кусков, попаданий: %,d, промахов: %,d)",
+                             name, ranks.size(), cache.size(), getCacheHits(), getCacheMisses());
+    }
+}
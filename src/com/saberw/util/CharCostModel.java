@@ -0,0 +1,29 @@
+package com.saberw.util;
+
+/**
+ * Стоимость в символах Java (UTF-16) - прежняя оценка выгоды
+ */
+public class CharCostModel implements CostModel {
+
+    public static final CharCostModel INSTANCE = new CharCostModel();
+
+    @Override
+    public int cost(CharSequence text) {
+        return text.length();
+    }
+
+    @Override
+    public int entryCost(String word, String code) {
+        return code.length() + word.length() + 3; // +3 для "=" и \n в словаре
+    }
+
+    @Override
+    public String getName() {
+        return "chars";
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,188 @@
+package com.saberw.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Пространство кодов: символы-кандидаты в коды в порядке предпочтения
+ * (сначала самые дешёвые). Генератор кодов берёт их по порядку и пропускает
+ * символы, которые встречаются в тексте.
+ *
+ * Пространство по умолчанию - блоки, которые не меняются при нормализации NFC,
+ * от редких в обычном тексте к частым:
+ *   3400-4DBF   CJK Extension A (как и раньше - первые 140 кодов те же)
+ *   A000-A48C   Yi Syllables
+ *   20000-2A6DF CJK Extension B
+ *   2A700-2EBEF CJK Extension C-F (B-F - вне BMP, два символа UTF-16)
+ *   AC00-D7A3   Hangul Syllables
+ *   4E00-9FFF   CJK Unified Ideographs
+ * Хангыль и основные иероглифы - обычные буквы корейского и китайского текста:
+ * код из них совпал бы с символом сообщения, поэтому они идут последними,
+ * хотя в BMP короче. Редкие символы вне BMP - раньше них.
+ *
+ * Для экономии токенов языковой модели порядок лучше взять из модели
+ * стоимости (rankedBy): самые частые записи словаря получают коды, которые
+ * токенизатор режет на меньшее число токенов. Ранжирование ~100 тыс. символов
+ * заметно по времени, поэтому его результат сохраняется в файл (ranked).
+ */
+public class CodeSpace {
+
+    public static final int[][] DEFAULT_BLOCKS = {
+        {0x3400, 0x4DBF},
+        {0xA000, 0xA48C},
+        {0x20000, 0x2A6DF},
+        {0x2A700, 0x2EBEF},
+        {0xAC00, 0xD7A3},
+        {0x4E00, 0x9FFF}
+    };
+
+    public static final CodeSpace DEFAULT = fromBlocks(DEFAULT_BLOCKS);
+
+    // То же без символов вне BMP
+    public static final CodeSpace DEFAULT_BMP = DEFAULT.bmpOnly();
+
+    private static final String CACHE_HEADER = "# SABER_W CODE SPACE v1 ";
+
+    private final int[] codePoints;
+    private String fingerprint;
+
+    /**
+     * @param codePoints кандидаты в порядке предпочтения (без повторов)
+     */
+    public CodeSpace(int[] codePoints) {
+        this.codePoints = codePoints.clone();
+    }
+
+    /**
+     * SHA-256 от кодов в их порядке (для ключей кэшей; считается один раз)
+     */
+    public synchronized String getFingerprint() {
+        if (fingerprint == null) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                byte[] buffer = new byte[codePoints.length * 4];
+                for (int i = 0; i < codePoints.length; i++) {
+                    buffer[i * 4] = (byte) (codePoints[i] >>> 24);
+                    buffer[i * 4 + 1] = (byte) (codePoints[i] >>> 16);
+                    buffer[i * 4 + 2] = (byte) (codePoints[i] >>> 8);
+                    buffer[i * 4 + 3] = (byte) codePoints[i];
+                }
+                StringBuilder hex = new StringBuilder(64);
+                for (byte b : digest.digest(buffer)) {
+                    hex.append(String.format("%02x", b & 0xFF));
+                }
+                fingerprint = hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 недоступен", e);
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Пространство из блоков {начало, конец включительно}; неназначенные
+     * символы пропускаются
+     */
+    public static CodeSpace fromBlocks(int[][] blocks) {
+        int total = 0;
+        for (int[] block : blocks) {
+            total += block[1] - block[0] + 1;
+        }
+        int[] points = new int[total];
+        int count = 0;
+        for (int[] block : blocks) {
+            for (int cp = block[0]; cp <= block[1]; cp++) {
+                boolean surrogate = Character.isBmpCodePoint(cp) && Character.isSurrogate((char) cp);
+                if (Character.isDefined(cp) && !surrogate) {
+                    points[count++] = cp;
+                }
+            }
+        }
+        return new CodeSpace(Arrays.copyOf(points, count));
+    }
+
+    public int size() {
+        return codePoints.length;
+    }
+
+    public int codePointAt(int index) {
+        return codePoints[index];
+    }
+
+    /**
+     * То же пространство, упорядоченное по стоимости кода в модели
+     * (при равной стоимости - в прежнем порядке)
+     */
+    public CodeSpace rankedBy(CostModel costModel) {
+        // Стоимость в старших битах, исходный индекс в младших - сортировка устойчива
+        long[] keys = new long[codePoints.length];
+        for (int i = 0; i < codePoints.length; i++) {
+            String code = new String(Character.toChars(codePoints[i]));
+            keys[i] = (long) costModel.occurrenceCost(code) << 32 | i;
+        }
+        Arrays.sort(keys);
+
+        int[] ranked = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ranked[i] = codePoints[(int) keys[i]];
+        }
+        return new CodeSpace(ranked);
+    }
+
+    /**
+     * Ранжированное пространство из файла кэша; если файла нет или он
+     * построен для другой модели или другого пространства - ранжирует
+     * заново и перезаписывает файл
+     */
+    public CodeSpace ranked(CostModel costModel, Path cacheFile) throws IOException {
+        String header = CACHE_HEADER + costModel.getFingerprint() + " " + size() + " " +
+                        getFingerprint() + " #";
+        if (Files.exists(cacheFile)) {
+            List<String> lines = Files.readAllLines(cacheFile, StandardCharsets.US_ASCII);
+            if (!lines.isEmpty() && lines.get(0).equals(header) && lines.size() == size() + 1) {
+                int[] ranked = new int[size()];
+                try {
+                    for (int i = 0; i < ranked.length; i++) {
+                        ranked[i] = Integer.parseInt(lines.get(i + 1), 16);
+                    }
+                    return new CodeSpace(ranked);
+                } catch (NumberFormatException e) {
+                    // Повреждённый кэш - ранжируем заново
+                }
+            }
+        }
+
+        CodeSpace ranked = rankedBy(costModel);
+        List<String> lines = new ArrayList<>(ranked.size() + 1);
+        lines.add(header);
+        for (int codePoint : ranked.codePoints) {
+            lines.add(Integer.toHexString(codePoint));
+        }
+        Path parent = cacheFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(cacheFile, lines, StandardCharsets.US_ASCII);
+        return ranked;
+    }
+
+    /**
+     * Только символы BMP (для генераторов, где код - ровно один char)
+     */
+    public CodeSpace bmpOnly() {
+        return new CodeSpace(Arrays.stream(codePoints)
+            .filter(Character::isBmpCodePoint).toArray());
+    }
+
+    @Override
+    public String toString() {
+        return "CodeSpace[" + codePoints.length + ", " + getFingerprint().substring(0, 8) + "]";
+    }
+}
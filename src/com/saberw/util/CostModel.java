@@ -0,0 +1,48 @@
+package com.saberw.util;
+
+/**
+ * Модель стоимости текста: во что обходится строка в единицах, которые
+ * мы экономим. CharCostModel считает символы Java, BpeCostModel - токены
+ * языковой модели по словарю BPE.
+ */
+public interface CostModel {
+
+    /**
+     * Стоимость текста целиком
+     */
+    int cost(CharSequence text);
+
+    /**
+     * Стоимость одного вхождения слова (или кода) в обычном тексте,
+     * где перед ним обычно стоит пробел
+     */
+    default int occurrenceCost(String text) {
+        return cost(text);
+    }
+
+    /**
+     * Сколько экономит одна замена слова кодом
+     */
+    default int occurrenceSaving(String word, String code) {
+        return occurrenceCost(word) - occurrenceCost(code);
+    }
+
+    /**
+     * Стоимость строки словаря "код=слово\n"
+     */
+    default int entryCost(String word, String code) {
+        return cost(code + "=" + word + "\n");
+    }
+
+    /**
+     * Короткое имя для статистики и ключей кэша
+     */
+    String getName();
+
+    /**
+     * Отпечаток модели для кэшей: меняется вместе с результатами cost()
+     */
+    default String getFingerprint() {
+        return getName();
+    }
+}
@@ -25,24 +25,37 @@ public class ImprovedCodeGenerator {
         '㒂', '㒃', '㒄', '㒅', '㒆', '㒇', '㒈', '㒉', '㒊', '㒋'
     };
     
+    // Первые символы двухсимвольных кодов (CJK Extension A, сразу после расширенного набора).
+    // Они никогда не выдаются как односимвольные коды, иначе пара кодов "㐀" + "㐁"
+    // была бы неотличима от двухсимвольного кода "㐀㐁"
+    private static final char BIGRAM_LEAD_FIRST = '\u348C';
+    private static final int BIGRAM_LEAD_COUNT = 64;
+    
     // Специальные символы для группового кодирования
     public static final char GROUP_MARKER = '●';      // U+25CF BLACK CIRCLE
     public static final char LOWER_CASE_MARKER = '↓'; // U+2193 DOWNWARDS ARROW
     
     private final String originalText;
-    private final Set<Character> textCharacters;
-    private final Set<String> textBigrams;
-    private int primaryIndex;
-    private int extendedIndex;
+    // Символы и пары символов текста (битовая карта и хэш int, без упаковки)
+    private final TextCharIndex textIndex;
+    private final CodeSpace codeSpace;
+    private int codeSpaceIndex;
     private int bigramIndex1;
     private int bigramIndex2;
     
     public ImprovedCodeGenerator(String originalText) {
+        this(originalText, CodeSpace.DEFAULT);
+    }
+    
+    /**
+     * Генератор с заданным пространством односимвольных кодов; когда оно
+     * исчерпано, выдаются двухсимвольные коды
+     */
+    public ImprovedCodeGenerator(String originalText, CodeSpace codeSpace) {
         this.originalText = originalText;
-        this.textCharacters = collectCharacters(originalText);
-        this.textBigrams = collectBigrams(originalText);
-        this.primaryIndex = 0;
-        this.extendedIndex = 0;
+        this.textIndex = new TextCharIndex(originalText);
+        this.codeSpace = codeSpace;
+        this.codeSpaceIndex = 0;
         this.bigramIndex1 = 0;
         this.bigramIndex2 = 0;
         
@@ -50,29 +63,41 @@ public class ImprovedCodeGenerator {
         ensureMarkerSafety();
     }
     
-    private Set<Character> collectCharacters(String text) {
-        Set<Character> chars = new HashSet<>();
-        for (char c : text.toCharArray()) {
-            chars.add(c);
+    /**
+     * Генератор по набору символов текста, когда самого текста целиком нет
+     * (потоковое сжатие). Двухсимвольные коды и так составляются только из
+     * символов, которых нет в тексте, поэтому набора символов достаточно
+     */
+    public ImprovedCodeGenerator(Set<Character> textCharacters) {
+        this.originalText = null;
+        this.textIndex = new TextCharIndex();
+        for (char c : textCharacters) {
+            textIndex.addChar(c);
         }
-        return chars;
+        // Пар символов текста нет - коды вне BMP нельзя проверить
+        this.codeSpace = CodeSpace.DEFAULT_BMP;
+        this.codeSpaceIndex = 0;
+        this.bigramIndex1 = 0;
+        this.bigramIndex2 = 0;
+        
+        ensureMarkerSafety();
     }
     
-    private Set<String> collectBigrams(String text) {
-        Set<String> bigrams = new HashSet<>();
-        for (int i = 0; i < text.length() - 1; i++) {
-            bigrams.add(text.substring(i, i + 2));
-        }
-        return bigrams;
+    /**
+     * Учесть символы, добавленные в текст после создания генератора
+     * (правка документа): следующие коды будут их избегать
+     */
+    public void addTextCharacters(CharSequence text) {
+        textIndex.addText(text);
     }
     
     private void ensureMarkerSafety() {
         // Если маркеры уже есть в тексте, заменяем их
-        if (textCharacters.contains(GROUP_MARKER)) {
+        if (textIndex.containsChar(GROUP_MARKER)) {
             System.err.println("Предупреждение: символ '" + GROUP_MARKER + 
                              "' уже есть в тексте. Групповое кодирование может работать некорректно.");
         }
-        if (textCharacters.contains(LOWER_CASE_MARKER)) {
+        if (textIndex.containsChar(LOWER_CASE_MARKER)) {
             System.err.println("Предупреждение: символ '" + LOWER_CASE_MARKER + 
                              "' уже есть в тексте.");
         }
@@ -82,39 +107,45 @@ public class ImprovedCodeGenerator {
      * Получить следующий безопасный код (1 или 2 символа)
      */
     public String nextCode() {
-        // 1. Пробуем основной набор (1 символ)
-        while (primaryIndex < PRIMARY_CODES.length) {
-            char candidate = PRIMARY_CODES[primaryIndex++];
-            if (!textCharacters.contains(candidate)) {
-                return String.valueOf(candidate);
-            }
-        }
-        
-        // 2. Пробуем расширенный набор (1 символ)
-        while (extendedIndex < EXTENDED_CODES.length) {
-            char candidate = EXTENDED_CODES[extendedIndex++];
-            if (!textCharacters.contains(candidate)) {
-                return String.valueOf(candidate);
+        // 1. Один символ из пространства кодов (основной и расширенный
+        //    наборы - его начало); символ вне BMP - суррогатная пара
+        while (codeSpaceIndex < codeSpace.size()) {
+            int candidate = codeSpace.codePointAt(codeSpaceIndex++);
+            if (!Character.isBmpCodePoint(candidate)) {
+                char high = Character.highSurrogate(candidate);
+                char low = Character.lowSurrogate(candidate);
+                if (!textIndex.containsPair(high, low)) {
+                    return new String(new char[] {high, low});
+                }
+            } else if (!isReservedChar((char) candidate)
+                       && !textIndex.containsChar((char) candidate)) {
+                return String.valueOf((char) candidate);
             }
         }
         
-        // 3. Генерируем 2-символьные коды
+        // 2. Генерируем 2-символьные коды
         return generateBigramCode();
     }
     
+    // Первые символы двухсимвольных кодов и маркеры - не односимвольные коды
+    private static boolean isReservedChar(char c) {
+        return (c >= BIGRAM_LEAD_FIRST && c < BIGRAM_LEAD_FIRST + BIGRAM_LEAD_COUNT) ||
+               c == GROUP_MARKER || c == LOWER_CASE_MARKER;
+    }
+    
     private String generateBigramCode() {
-        // Используем символы из основного набора для создания пар
-        while (bigramIndex1 < PRIMARY_CODES.length) {
-            char first = PRIMARY_CODES[bigramIndex1];
+        // Первый символ - из отдельного набора, второй - из основного
+        while (bigramIndex1 < BIGRAM_LEAD_COUNT) {
+            char first = (char) (BIGRAM_LEAD_FIRST + bigramIndex1);
             while (bigramIndex2 < PRIMARY_CODES.length) {
                 char second = PRIMARY_CODES[bigramIndex2++];
-                String candidate = String.valueOf(first) + String.valueOf(second);
                 
                 // Проверяем, что эта пара не встречается в тексте
-                if (!textBigrams.contains(candidate) && 
-                    !textCharacters.contains(first) && 
-                    !textCharacters.contains(second)) {
-                    return candidate;
+                // (строка создаётся только для подходящего кода)
+                if (!textIndex.containsPair(first, second) && 
+                    !textIndex.containsChar(first) && 
+                    !textIndex.containsChar(second)) {
+                    return new String(new char[] {first, second});
                 }
             }
             bigramIndex1++;
@@ -132,11 +163,14 @@ public class ImprovedCodeGenerator {
         if (code == null || code.isEmpty()) return false;
         
         if (code.length() == 1) {
-            return !textCharacters.contains(code.charAt(0));
+            return !textIndex.containsChar(code.charAt(0));
+        } else if (code.length() == 2 && Character.isSurrogatePair(code.charAt(0), code.charAt(1))) {
+            // Символ вне BMP: достаточно, чтобы в тексте не было этой пары
+            return !textIndex.containsPair(code.charAt(0), code.charAt(1));
         } else if (code.length() == 2) {
-            return !textBigrams.contains(code) &&
-                   !textCharacters.contains(code.charAt(0)) &&
-                   !textCharacters.contains(code.charAt(1));
+            return !textIndex.containsPair(code.charAt(0), code.charAt(1)) &&
+                   !textIndex.containsChar(code.charAt(0)) &&
+                   !textIndex.containsChar(code.charAt(1));
         }
         return false;
     }
@@ -175,7 +209,8 @@ public class ImprovedCodeGenerator {
     private static boolean isLikelyCodeChar(char c) {
         // Проверяем, находится ли символ в диапазоне наших кодов
         return (c >= PRIMARY_CODES[0] && c <= PRIMARY_CODES[PRIMARY_CODES.length - 1]) ||
-               (c >= EXTENDED_CODES[0] && c <= EXTENDED_CODES[EXTENDED_CODES.length - 1]);
+               (c >= EXTENDED_CODES[0] && c <= EXTENDED_CODES[EXTENDED_CODES.length - 1]) ||
+               (c >= BIGRAM_LEAD_FIRST && c < BIGRAM_LEAD_FIRST + BIGRAM_LEAD_COUNT);
     }
     
     /**
@@ -183,11 +218,16 @@ public class ImprovedCodeGenerator {
      * @return экономия в символах при кодировании этого слова
      */
     public static int calculateBenefit(String word, int frequency, String code) {
+        return calculateBenefit(word, frequency, code, CharCostModel.INSTANCE);
+    }
+    
+    /**
+     * Оценить выгоду в единицах модели стоимости (символы, токены BPE)
+     * @return экономия при кодировании этого слова, включая строку словаря
+     */
+    public static int calculateBenefit(String word, int frequency, String code, CostModel costModel) {
         if (word == null || code == null) return 0;
         
-        int originalChars = word.length() * frequency;
-        int encodedChars = code.length() * frequency + code.length() + word.length() + 3; // +3 для "=" и \n в словаре
-        
-        return originalChars - encodedChars;
+        return costModel.occurrenceSaving(word, code) * frequency - costModel.entryCost(word, code);
     }
 }
\ No newline at end of file
@@ -18,53 +18,56 @@ public class SmartCodeGenerator {
     };
     
     private final String originalText;
-    private final Set<Character> textChars;
+    private final BitSet textChars; // 65536 бит - по одному на символ
+    private final CodeSpace codeSpace;
     private int currentIndex;
     
     public SmartCodeGenerator(String originalText) {
+        this(originalText, CodeSpace.DEFAULT_BMP);
+    }
+    
+    /**
+     * Коды - только одиночные символы BMP (на этом держится группировка кодов),
+     * поэтому символы вне BMP из пространства кодов пропускаются
+     */
+    public SmartCodeGenerator(String originalText, CodeSpace codeSpace) {
         this.originalText = originalText;
         this.textChars = collectUniqueChars(originalText);
+        this.codeSpace = codeSpace.bmpOnly();
         this.currentIndex = 0;
     }
     
-    // Собираем уникальные символы из исходного текста
-    private Set<Character> collectUniqueChars(String text) {
-        Set<Character> chars = new HashSet<>();
-        for (char c : text.toCharArray()) {
-            chars.add(c);
+    // Собираем уникальные символы из исходного текста (без упаковки в Character)
+    private BitSet collectUniqueChars(String text) {
+        BitSet chars = new BitSet(65536);
+        for (int i = 0; i < text.length(); i++) {
+            chars.set(text.charAt(i));
         }
         return chars;
     }
     
     // Получаем следующий код, которого нет в исходном тексте
+    // (первые 100 символов пространства по умолчанию - прежний CODE_CHARS)
     public String nextCode() {
-        if (currentIndex >= CODE_CHARS.length) {
-            // Если символы закончились, используем двухсимвольные коды
-            return getFallbackCode();
-        }
-        
-        char candidate = CODE_CHARS[currentIndex++];
-        
-        // Проверяем, есть ли этот символ в исходном тексте
-        if (textChars.contains(candidate)) {
-            // Если есть, ищем следующий доступный символ
-            return findAvailableCode();
+        while (currentIndex < codeSpace.size()) {
+            char candidate = (char) codeSpace.codePointAt(currentIndex++);
+            if (!textChars.get(candidate)) {
+                return String.valueOf(candidate);
+            }
         }
         
-        return String.valueOf(candidate);
+        // Если все символы уже есть в тексте, используем fallback
+        return getFallbackCode();
     }
     
-    // Ищем доступный символ, которого нет в тексте
-    private String findAvailableCode() {
-        for (int i = currentIndex; i < CODE_CHARS.length; i++) {
-            char candidate = CODE_CHARS[i];
-            if (!textChars.contains(candidate)) {
-                currentIndex = i + 1;
+    // Следующий код без продвижения: что вернёт nextCode()
+    public String peekCode() {
+        for (int i = currentIndex; i < codeSpace.size(); i++) {
+            char candidate = (char) codeSpace.codePointAt(i);
+            if (!textChars.get(candidate)) {
                 return String.valueOf(candidate);
             }
         }
-        
-        // Если все символы уже есть в тексте, используем fallback
         return getFallbackCode();
     }
     
@@ -82,7 +85,7 @@ public class SmartCodeGenerator {
         }
         
         char c = code.charAt(0);
-        return !textChars.contains(c);
+        return !textChars.get(c);
     }
     
     // Получить список всех используемых символов для кодов
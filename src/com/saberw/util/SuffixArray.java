@@ -0,0 +1,166 @@
+package com.saberw.util;
+
+import java.util.Arrays;
+
+/**
+ * Суффиксный массив (SA-IS, линейное время) и массив LCP (алгоритм Kasai)
+ * для последовательности целых чисел - например, номеров токенов.
+ */
+public class SuffixArray {
+
+    /**
+     * Построить суффиксный массив
+     * @param s последовательность, значения в диапазоне [0, upper]
+     */
+    public static int[] build(int[] s, int upper) {
+        int n = s.length;
+        if (n == 0) return new int[0];
+        if (n == 1) return new int[] {0};
+        if (n == 2) {
+            return s[0] < s[1] ? new int[] {0, 1} : new int[] {1, 0};
+        }
+        return saIs(s, upper);
+    }
+
+    /**
+     * Массив LCP: lcp[i] - длина общего префикса суффиксов sa[i] и sa[i + 1]
+     */
+    public static int[] lcp(int[] s, int[] sa) {
+        int n = s.length;
+        if (n < 2) return new int[0];
+
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            rank[sa[i]] = i;
+        }
+
+        int[] lcp = new int[n - 1];
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            if (h > 0) h--;
+            if (rank[i] == 0) continue;
+
+            int j = sa[rank[i] - 1];
+            while (j + h < n && i + h < n && s[j + h] == s[i + h]) {
+                h++;
+            }
+            lcp[rank[i] - 1] = h;
+        }
+        return lcp;
+    }
+
+    private static int[] saIs(int[] s, int upper) {
+        int n = s.length;
+        int[] sa = new int[n];
+
+        // Типы суффиксов: S (true) или L (false)
+        boolean[] ls = new boolean[n];
+        for (int i = n - 2; i >= 0; i--) {
+            ls[i] = s[i] == s[i + 1] ? ls[i + 1] : s[i] < s[i + 1];
+        }
+
+        // Границы корзин для L- и S-суффиксов
+        int[] sumL = new int[upper + 1];
+        int[] sumS = new int[upper + 1];
+        for (int i = 0; i < n; i++) {
+            if (!ls[i]) {
+                sumS[s[i]]++;
+            } else if (s[i] + 1 <= upper) {
+                sumL[s[i] + 1]++;
+            }
+        }
+        for (int i = 0; i <= upper; i++) {
+            sumS[i] += sumL[i];
+            if (i < upper) sumL[i + 1] += sumS[i];
+        }
+
+        // LMS-позиции
+        int[] lmsMap = new int[n + 1];
+        Arrays.fill(lmsMap, -1);
+        int m = 0;
+        for (int i = 1; i < n; i++) {
+            if (!ls[i - 1] && ls[i]) {
+                lmsMap[i] = m++;
+            }
+        }
+        int[] lms = new int[m];
+        for (int i = 1, k = 0; i < n; i++) {
+            if (!ls[i - 1] && ls[i]) {
+                lms[k++] = i;
+            }
+        }
+
+        induce(s, sa, ls, sumL, sumS, lms, upper);
+
+        if (m > 0) {
+            // Сортированные LMS-подстроки получают имена для рекурсии
+            int[] sortedLms = new int[m];
+            for (int i = 0, k = 0; i < n; i++) {
+                if (lmsMap[sa[i]] != -1) {
+                    sortedLms[k++] = sa[i];
+                }
+            }
+
+            int[] recS = new int[m];
+            int recUpper = 0;
+            recS[lmsMap[sortedLms[0]]] = 0;
+            for (int i = 1; i < m; i++) {
+                int l = sortedLms[i - 1];
+                int r = sortedLms[i];
+                int endL = lmsMap[l] + 1 < m ? lms[lmsMap[l] + 1] : n;
+                int endR = lmsMap[r] + 1 < m ? lms[lmsMap[r] + 1] : n;
+
+                boolean same = true;
+                if (endL - l != endR - r) {
+                    same = false;
+                } else {
+                    while (l < endL && s[l] == s[r]) {
+                        l++;
+                        r++;
+                    }
+                    if (l == n || s[l] != s[r]) same = false;
+                }
+                if (!same) recUpper++;
+                recS[lmsMap[sortedLms[i]]] = recUpper;
+            }
+
+            int[] recSa = build(recS, recUpper);
+            for (int i = 0; i < m; i++) {
+                sortedLms[i] = lms[recSa[i]];
+            }
+            induce(s, sa, ls, sumL, sumS, sortedLms, upper);
+        }
+
+        return sa;
+    }
+
+    // Индуцированная сортировка L- и S-суффиксов по расставленным LMS
+    private static void induce(int[] s, int[] sa, boolean[] ls, int[] sumL, int[] sumS,
+                               int[] lms, int upper) {
+        int n = s.length;
+        Arrays.fill(sa, -1);
+
+        int[] buf = Arrays.copyOf(sumS, upper + 1);
+        for (int d : lms) {
+            if (d == n) continue;
+            sa[buf[s[d]]++] = d;
+        }
+
+        buf = Arrays.copyOf(sumL, upper + 1);
+        sa[buf[s[n - 1]]++] = n - 1;
+        for (int i = 0; i < n; i++) {
+            int v = sa[i];
+            if (v >= 1 && !ls[v - 1]) {
+                sa[buf[s[v - 1]]++] = v - 1;
+            }
+        }
+
+        buf = Arrays.copyOf(sumL, upper + 1);
+        for (int i = n - 1; i >= 0; i--) {
+            int v = sa[i];
+            if (v >= 1 && ls[v - 1]) {
+                sa[--buf[s[v - 1] + 1]] = v - 1;
+            }
+        }
+    }
+}
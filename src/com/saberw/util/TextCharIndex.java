@@ -0,0 +1,124 @@
+package com.saberw.util;
+
+import java.util.BitSet;
+
+/**
+ * Какие символы и пары соседних символов встречаются в тексте.
+ * Символы - битовая карта на 65536 бит, пары - открытая адресация по int
+ * (c1 << 16 | c2). Строится за один проход; проверки ничего не создают.
+ */
+public class TextCharIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final BitSet chars = new BitSet(65536);
+
+    // Пары: 0 - пустая ячейка, поэтому пара (0, 0) хранится отдельно
+    private int[] pairs = new int[INITIAL_CAPACITY];
+    private int pairCount;
+    private boolean hasZeroPair;
+
+    public TextCharIndex() {
+    }
+
+    public TextCharIndex(CharSequence text) {
+        addText(text);
+    }
+
+    /**
+     * Добавить символы и пары соседних символов текста
+     */
+    public void addText(CharSequence text) {
+        int length = text.length();
+        if (length == 0) {
+            return;
+        }
+        char previous = text.charAt(0);
+        chars.set(previous);
+        for (int i = 1; i < length; i++) {
+            char c = text.charAt(i);
+            chars.set(c);
+            addPair(previous << 16 | c);
+            previous = c;
+        }
+    }
+
+    public void addChar(char c) {
+        chars.set(c);
+    }
+
+    public boolean containsChar(char c) {
+        return chars.get(c);
+    }
+
+    public boolean containsPair(char first, char second) {
+        int key = first << 16 | second;
+        if (key == 0) {
+            return hasZeroPair;
+        }
+        int mask = pairs.length - 1;
+        int slot = mix(key) & mask;
+        while (pairs[slot] != 0) {
+            if (pairs[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int charCount() {
+        return chars.cardinality();
+    }
+
+    public int pairCount() {
+        return pairCount + (hasZeroPair ? 1 : 0);
+    }
+
+    private void addPair(int key) {
+        if (key == 0) {
+            hasZeroPair = true;
+            return;
+        }
+        int mask = pairs.length - 1;
+        int slot = mix(key) & mask;
+        while (pairs[slot] != 0) {
+            if (pairs[slot] == key) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        pairs[slot] = key;
+        pairCount++;
+
+        // Заполнение не больше половины
+        if (pairCount * 2 > pairs.length) {
+            rehash(pairs.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] old = pairs;
+        pairs = new int[capacity];
+        int mask = capacity - 1;
+        for (int key : old) {
+            if (key != 0) {
+                int slot = mix(key) & mask;
+                while (pairs[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                pairs[slot] = key;
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return "TextCharIndex[chars=" + charCount() + ", pairs=" + pairCount() + "]";
+    }
+}
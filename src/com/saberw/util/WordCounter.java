@@ -0,0 +1,232 @@
+package com.saberw.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Счётчик слов без упаковки Integer и без строк на каждое вхождение.
+ * Ключ - участок исходного текста (начало, длина); хэш считается по символам
+ * участка со случайным для каждого счётчика начальным значением (смешивание
+ * как в MurmurHash3), поэтому заранее подобранные совпадающие хэши
+ * (как "Aa" и "BB" у String.hashCode) не превращают подсчёт в квадратичный.
+ * Открытая адресация с линейным пробированием, записи хранятся в порядке
+ * первого появления.
+ */
+public class WordCounter {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final CharSequence source;
+    private final int seed = ThreadLocalRandom.current().nextInt();
+
+    // Записи в порядке первого появления
+    private int[] keyStarts;
+    private int[] keyLengths;
+    private int[] hashes;
+    private int[] counts;
+    private int size;
+
+    // Таблица: номер записи + 1, 0 - пусто
+    private int[] table;
+    private int mask;
+
+    public WordCounter(CharSequence source) {
+        this(source, DEFAULT_CAPACITY);
+    }
+
+    public WordCounter(CharSequence source, int expectedKeys) {
+        this.source = source;
+        int capacity = Integer.highestOneBit(Math.max(16, expectedKeys) * 2 - 1) << 1;
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+        int entries = Math.max(16, expectedKeys);
+        this.keyStarts = new int[entries];
+        this.keyLengths = new int[entries];
+        this.hashes = new int[entries];
+        this.counts = new int[entries];
+    }
+
+    public CharSequence getSource() { return source; }
+    public int size() { return size; }
+
+    /**
+     * Учесть одно вхождение участка [start, end) исходного текста
+     */
+    public void add(int start, int end) {
+        add(start, end - start, hash(seed, source, start, end), 1);
+    }
+
+    /**
+     * Учесть вхождение и вернуть номер ключа: ключи нумеруются с 0
+     * в порядке первого появления
+     */
+    public int intern(int start, int end) {
+        return add(start, end - start, hash(seed, source, start, end), 1);
+    }
+
+    /**
+     * Число вхождений ключа с номером id
+     */
+    public int getCount(int id) {
+        return counts[id];
+    }
+
+    /**
+     * Ключ с номером id (строка создаётся при каждом вызове)
+     */
+    public String getKey(int id) {
+        return keyString(id);
+    }
+
+    /**
+     * Число вхождений участка [start, end) (0 - не встречался)
+     */
+    public int get(int start, int end) {
+        int entry = find(source, start, end - start, hash(seed, source, start, end));
+        return entry < 0 ? 0 : counts[entry];
+    }
+
+    public int get(CharSequence key) {
+        int entry = find(key, 0, key.length(), hash(seed, key, 0, key.length()));
+        return entry < 0 ? 0 : counts[entry];
+    }
+
+    /**
+     * Добавить счётчики другого счётчика того же текста
+     * (новые ключи - в его порядке, после своих)
+     */
+    public void merge(WordCounter other) {
+        if (other.source != source) {
+            throw new IllegalArgumentException("Счётчики построены по разным текстам");
+        }
+        for (int i = 0; i < other.size; i++) {
+            int start = other.keyStarts[i];
+            int end = start + other.keyLengths[i];
+            // У другого счётчика своё начальное значение хэша
+            add(start, end - start, hash(seed, source, start, end), other.counts[i]);
+        }
+    }
+
+    /**
+     * Обойти ключи в порядке первого появления; строка создаётся один раз на ключ
+     */
+    public void forEach(ObjIntConsumer<String> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(keyString(i), counts[i]);
+        }
+    }
+
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> result = new HashMap<>();
+        forEach(result::put);
+        return result;
+    }
+
+    private String keyString(int entry) {
+        return source.subSequence(keyStarts[entry], keyStarts[entry] + keyLengths[entry]).toString();
+    }
+
+    private int add(int start, int length, int hash, int count) {
+        int slot = hash & mask;
+        while (true) {
+            int entry = table[slot] - 1;
+            if (entry < 0) {
+                break;
+            }
+            if (hashes[entry] == hash && keyEquals(entry, source, start, length)) {
+                counts[entry] += count;
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == keyStarts.length) {
+            int capacity = size * 2;
+            keyStarts = Arrays.copyOf(keyStarts, capacity);
+            keyLengths = Arrays.copyOf(keyLengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        keyStarts[size] = start;
+        keyLengths[size] = length;
+        hashes[size] = hash;
+        counts[size] = count;
+        table[slot] = ++size;
+
+        // Заполнение не больше половины
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return size - 1;
+    }
+
+    private int find(CharSequence text, int start, int length, int hash) {
+        int slot = hash & mask;
+        while (true) {
+            int entry = table[slot] - 1;
+            if (entry < 0) {
+                return -1;
+            }
+            if (hashes[entry] == hash && keyEquals(entry, text, start, length)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(int entry, CharSequence text, int start, int length) {
+        if (keyLengths[entry] != length) {
+            return false;
+        }
+        int keyStart = keyStarts[entry];
+        for (int k = 0; k < length; k++) {
+            if (source.charAt(keyStart + k) != text.charAt(start + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        mask = capacity - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = hashes[entry] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry + 1;
+        }
+    }
+
+    // MurmurHash3 (32 бита) по парам символов участка
+    private static int hash(int seed, CharSequence text, int start, int end) {
+        int h = seed;
+        int i = start;
+        for (; i + 1 < end; i += 2) {
+            h ^= mixKey(text.charAt(i) | (text.charAt(i + 1) << 16));
+            h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+        }
+        if (i < end) {
+            h ^= mixKey(text.charAt(i));
+        }
+
+        // Финальное перемешивание: все биты хэша влияют на младшие (номер ячейки)
+        h ^= (end - start) * 2;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int mixKey(int k) {
+        k *= 0xcc9e2d51;
+        k = Integer.rotateLeft(k, 15);
+        return k * 0x1b873593;
+    }
+}